@@ -0,0 +1,23 @@
+package com.example.java11;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * JMH sums {@code AuxCounters.Type.EVENTS} values over all measurement iterations and forks,
+ * which suits counts but not gauges such as a percentile or a peak. Setting a gauge to its
+ * {@link #share} at the end of each iteration turns that sum into the mean per iteration.
+ * The per-iteration lines JMH prints while running show the share, not the value.
+ */
+final class AuxGauges {
+
+    private AuxGauges() {}
+
+    /**
+     * The iteration's share of the mean over all measurement iterations and forks.
+     */
+    static double share(double value, BenchmarkParams params) {
+        int iterations = params.getMeasurement().getCount();
+        int forks = Math.max(1, params.getForks());  // 0 forks runs in the JMH process itself
+        return value / ((double) iterations * forks);
+    }
+}
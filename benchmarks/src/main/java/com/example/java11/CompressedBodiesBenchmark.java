@@ -0,0 +1,189 @@
+package com.example.java11;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes on the wire and CPU cost of {@link CompressedBodies} for NDJSON batches of 1 KB,
+ * 64 KB and 1 MB, the shape of our batch uploads.
+ *
+ * {@code compress} runs a body through the compressing publisher and {@code decompress}
+ * through the decompressing subscriber, both in-process, so their time is the codec's CPU
+ * cost alone. The wireBytes column is the compressed size (the body size for identity).
+ * {@code upload} POSTs the body to the embedded {@link LocalHttpBinServer}, which decodes it.
+ * Loopback bandwidth is nearly free, so on a real link add wireBytes / bandwidth per request
+ * to see where compression pays off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class CompressedBodiesBenchmark {
+
+    private static final List<String> NAMES = List.of("Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace", "Heidi");
+    private static final List<String> CITIES = List.of("Berlin", "Lisbon", "Oslo", "Madrid", "Vienna", "Dublin");
+
+    @Param({"1024", "65536", "1048576"})
+    int payloadBytes;
+
+    @Param({"identity", "gzip-1", "gzip-6", "deflate-6"})
+    String codec;
+
+    byte[] payload;
+    byte[] compressed;
+    CompressedBodies.Encoding encoding;
+    int level;
+    LocalHttpBinServer server;
+    HttpClient client;
+
+    /**
+     * Compressed size of the body, reported next to the timing.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public double wireBytes;
+
+        @TearDown(Level.Iteration)
+        public void read(CompressedBodiesBenchmark benchmark, BenchmarkParams params) {
+            wireBytes = AuxGauges.share(benchmark.compressed.length, params);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        payload = ndjson(payloadBytes);
+        if (!codec.equals("identity")) {
+            String[] parts = codec.split("-");
+            encoding = CompressedBodies.Encoding.valueOf(parts[0].toUpperCase());
+            level = Integer.parseInt(parts[1]);
+        }
+        compressed = collect(publisher());
+        server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+        client = HttpClients.create(HttpClients.Config.defaults().withVersion(HttpClient.Version.HTTP_1_1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int compress(WireSize wire) throws Exception {
+        return collect(publisher()).length;
+    }
+
+    @Benchmark
+    public long decompress(WireSize wire) throws Exception {
+        HttpResponse.BodySubscriber<Long> subscriber = CompressedBodies.decompressing(
+                encoding == null ? null : encoding.token(), StreamingBodyHandlers.ofByteCount().apply(null));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                // Everything is pushed below
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        // In network-sized pieces
+        for (int offset = 0; offset < compressed.length; offset += 16 * 1024) {
+            int end = Math.min(compressed.length, offset + 16 * 1024);
+            subscriber.onNext(List.of(ByteBuffer.wrap(compressed, offset, end - offset)));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public int upload(WireSize wire) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(server.uri("/post"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(publisher());
+        if (encoding != null) {
+            request.header("Content-Encoding", encoding.token());
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest.BodyPublisher publisher() {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofByteArray(payload);
+        return encoding == null ? body : CompressedBodies.compress(body, encoding, level);
+    }
+
+    private static byte[] collect(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<byte[]> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                out.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(out.toByteArray());
+            }
+        });
+        return done.get();
+    }
+
+    /**
+     * Records like {"id":17,"name":"Carol","age":41,"city":"Oslo","active":true}, one per line.
+     */
+    private static byte[] ndjson(int bytes) {
+        Random random = new Random(42);
+        StringBuilder lines = new StringBuilder(bytes + 100);
+        for (int id = 0; lines.length() < bytes; id++) {
+            lines.append("{\"id\":").append(id)
+                    .append(",\"name\":\"").append(NAMES.get(random.nextInt(NAMES.size()))).append(' ')
+                    .append((char) ('A' + random.nextInt(26))).append('.')
+                    .append("\",\"age\":").append(18 + random.nextInt(70))
+                    .append(",\"city\":\"").append(CITIES.get(random.nextInt(CITIES.size())))
+                    .append("\",\"active\":").append(random.nextBoolean())
+                    .append("}\n");
+        }
+        return Arrays.copyOf(lines.toString().getBytes(StandardCharsets.UTF_8), bytes);
+    }
+}
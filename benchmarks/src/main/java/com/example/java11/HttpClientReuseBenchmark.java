@@ -0,0 +1,79 @@
+package com.example.java11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second (Throughput rows) and latency percentiles (SampleTime rows, see p0.99)
+ * of a GET against the embedded {@link LocalHttpBinServer}, with a new client per request
+ * versus one shared client.
+ *
+ * Both clients use the same {@link HttpClients.Config}; the only difference is whether the
+ * client, and with it the pooled connection, is reused. The server runs in the benchmark JVM,
+ * so absolute numbers include its cost too.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Threads(8)
+@State(Scope.Benchmark)
+public class HttpClientReuseBenchmark {
+
+    @Param({"0", "5"})
+    int latencyMillis;
+
+    @Param({"HTTP_1_1"})
+    HttpClient.Version version;
+
+    LocalHttpBinServer server;
+    HttpClients.Config config;
+    HttpClient sharedClient;
+    HttpRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults()
+                .withLatency(Duration.ofMillis(latencyMillis), 0.0));
+        config = HttpClients.Config.defaults().withVersion(version);
+        sharedClient = HttpClients.create(config);
+        request = HttpRequest.newBuilder(server.uri("/get")).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        sharedClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int perCallClient() throws IOException, InterruptedException {
+        try (HttpClient client = HttpClients.create(config)) {
+            return client.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+        }
+    }
+
+    @Benchmark
+    public int sharedClient() throws IOException, InterruptedException {
+        return sharedClient.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+    }
+}
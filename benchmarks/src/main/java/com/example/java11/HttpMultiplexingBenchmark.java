@@ -0,0 +1,147 @@
+package com.example.java11;
+
+import com.example.LatencyHistogram;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Requests per second with {@code concurrency} requests in flight, as HTTP/1.1 over that many
+ * connections versus HTTP/2 streams multiplexed over one connection.
+ *
+ * HTTP/1.1 runs against {@link LocalHttpBinServer#start} and HTTP/2 against
+ * {@link LocalHttpBinServer#startH2c}, whose MAX_CONCURRENT_STREAMS is set to the
+ * concurrency. Both serve the same handler, but the server implementations differ, so compare
+ * the trends across parameters rather than single rows.
+ *
+ * With {@code slowPercent} 1, one request in a hundred takes an extra 50ms. The fastP99Ms
+ * column is the 99th percentile latency of the other requests: whether slow responses and
+ * large bodies ({@code bodyBytes}) hold up fast ones sharing the connection (head-of-line
+ * blocking) or only the one connection or stream they occupy.
+ *
+ * HttpClient does not queue requests beyond the server's stream limit; they fail with
+ * "too many concurrent streams". The semaphore bounding the batch is what a caller has to do
+ * as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Threads(1)
+@State(Scope.Benchmark)
+public class HttpMultiplexingBenchmark {
+
+    static final int BATCH = 1_000;
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    HttpClient.Version version;
+
+    @Param({"6", "100", "1000"})
+    int concurrency;
+
+    @Param({"1000", "100000"})
+    int bodyBytes;
+
+    @Param({"0", "1"})
+    int slowPercent;
+
+    LocalHttpBinServer server;
+    HttpClient client;
+    HttpRequest fastRequest;
+    HttpRequest slowRequest;
+
+    /**
+     * p99 latency of the fast requests, averaged over the iterations and reported next to the
+     * throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FastLatency {
+        public double fastP99Ms;
+
+        LatencyHistogram histogram;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            histogram = new LatencyHistogram();
+        }
+
+        @TearDown(Level.Iteration)
+        public void read(BenchmarkParams params) {
+            fastP99Ms = AuxGauges.share(histogram.percentileNanos(99) / 1e6, params);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        server = version == HttpClient.Version.HTTP_2
+                ? LocalHttpBinServer.startH2c(0, LocalHttpBinServer.Settings.defaults(), concurrency)
+                : LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+        client = HttpClients.create(HttpClients.Config.defaults().withVersion(version));
+        fastRequest = HttpRequest.newBuilder(server.uri("/get?bytes=" + bodyBytes)).build();
+        slowRequest = HttpRequest.newBuilder(server.uri("/get?bytes=" + bodyBytes + "&delay_ms=50")).build();
+
+        // One request first: concurrent first requests would each upgrade a connection to h2c
+        HttpResponse<Void> response = client.send(fastRequest, HttpResponse.BodyHandlers.discarding());
+        if (response.version() != version) {
+            throw new IllegalStateException("Expected " + version + " but got " + response.version());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch(FastLatency latency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(BATCH);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < BATCH; i++) {
+            boolean slow = i % 100 < slowPercent;
+            inFlight.acquire();
+            long start = System.nanoTime();
+            client.sendAsync(slow ? slowRequest : fastRequest, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            failure.compareAndSet(null, error);
+                        } else if (!slow) {
+                            latency.histogram.recordSince(start);
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Request failed", failure.get());
+        }
+    }
+}
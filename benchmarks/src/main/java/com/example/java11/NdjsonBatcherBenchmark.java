@@ -0,0 +1,118 @@
+package com.example.java11;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second pushed to the embedded {@link LocalHttpBinServer}, one POST per record
+ * as in {@code HttpClientExample.postRequest} versus {@link NdjsonBatcher} batches of
+ * {@code batchSize} records. {@code batchSize} 1 is the per-record baseline.
+ *
+ * There is no rate limit, so the batcher runs as fast as {@code maxInFlight} POSTs allow.
+ * The fillRatio and queueP99Ms columns are the batcher's own metrics: how full the batches
+ * were and how long a record waited before its batch went out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class NdjsonBatcherBenchmark {
+
+    static final int RECORDS = 10_000;
+
+    @Param({"1", "100", "1000"})
+    int batchSize;
+
+    LocalHttpBinServer server;
+    HttpClient client;
+    URI uri;
+    String[] records;
+
+    /**
+     * Batcher metrics, averaged over the iterations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class BatchMetrics {
+        public double fillRatio;
+        public double queueP99Ms;
+
+        NdjsonBatcher batcher;
+
+        @TearDown(Level.Iteration)
+        public void read(BenchmarkParams params) {
+            if (batcher != null) {
+                fillRatio = AuxGauges.share(batcher.stats().fillRatio(), params);
+                queueP99Ms = AuxGauges.share(batcher.queueDelay().percentileNanos(99) / 1e6, params);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+        client = HttpClients.create(HttpClients.Config.defaults().withVersion(HttpClient.Version.HTTP_1_1));
+        uri = server.uri("/post");
+        records = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = "{\"id\":" + i + ",\"name\":\"Person " + i + "\",\"age\":" + (20 + i % 50) + "}";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void post(BatchMetrics metrics) throws IOException, InterruptedException {
+        if (batchSize == 1) {
+            for (String record : records) {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(record))
+                        .build();
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+            }
+            return;
+        }
+        NdjsonBatcher.Config config = NdjsonBatcher.Config.defaults()
+                .withBatchSize(batchSize, 1024 * 1024)
+                .withLinger(Duration.ofMillis(5));
+        CompletableFuture<Void> last = null;
+        try (NdjsonBatcher batcher = new NdjsonBatcher(client, uri, config)) {
+            for (String record : records) {
+                last = batcher.add(record);
+            }
+            metrics.batcher = batcher;
+        }
+        last.join();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.java11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link ResilientHttpClient} on the happy path, where no call fails.
+ *
+ * {@code directSend} and {@code resilientSend} make the same GET against the embedded
+ * {@link LocalHttpBinServer} through the same client, without and with the retry, deadline
+ * and circuit breaker layer. {@code breakerClosed} is the breaker bookkeeping alone, shared
+ * by all benchmark threads: on success it only reads state, so it should not slow down as
+ * threads are added.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Threads(4)
+@State(Scope.Benchmark)
+public class ResilienceOverheadBenchmark {
+
+    LocalHttpBinServer server;
+    HttpClient client;
+    ResilientHttpClient resilientClient;
+    CircuitBreaker breaker;
+    HttpRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+        client = HttpClients.create(HttpClients.Config.defaults().withVersion(HttpClient.Version.HTTP_1_1));
+        resilientClient = new ResilientHttpClient(client, ResilientHttpClient.RetryPolicy.defaults(),
+                CircuitBreaker.Config.defaults());
+        breaker = new CircuitBreaker("benchmark", CircuitBreaker.Config.defaults());
+        request = HttpRequest.newBuilder(server.uri("/get")).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int directSend() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+    }
+
+    @Benchmark
+    public int resilientSend() throws IOException, InterruptedException {
+        return resilientClient.send(request, HttpResponse.BodyHandlers.ofString(), Duration.ofSeconds(5))
+                .body().length();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean breakerClosed() {
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        breaker.onSuccess(permit);
+        return permit != null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.java11;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a newline-delimited JSON body of about 1 KB, 1 MB and 100 MB from the embedded
+ * {@link LocalHttpBinServer} with BodyHandlers.ofString() versus the handlers in
+ * {@link StreamingBodyHandlers}.
+ *
+ * The peakRetainedMb column is the peak heap outside the young allocation area (old
+ * generation and survivors) during each iteration, which is where a fully buffered large
+ * body ends up. Run with {@code -prof gc} for the allocation rate (gc.alloc.rate.norm is
+ * bytes allocated per request). The server runs in the same JVM; its allocations are the
+ * same for every handler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StreamingBodyBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    int bodyBytes;
+
+    LocalHttpBinServer server;
+    HttpClient client;
+    HttpRequest request;
+    Path file;
+    FileChannel channel;
+
+    /**
+     * Counts top-level objects, the kind of summary a streaming consumer would keep.
+     */
+    static class ObjectCounter implements JsonStreamParser.Listener {
+        int depth;
+        int objects;
+
+        @Override
+        public void startObject() {
+            if (depth++ == 0) {
+                objects++;
+            }
+        }
+
+        @Override
+        public void endObject() {
+            depth--;
+        }
+    }
+
+    /**
+     * Peak retained heap, averaged over the iterations and reported next to the timing.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public double peakRetainedMb;
+
+        private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden"))
+                .toList();
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            System.gc();
+            pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        @TearDown(Level.Iteration)
+        public void read(BenchmarkParams params) {
+            double peakMb = pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / 1e6;
+            peakRetainedMb = AuxGauges.share(peakMb, params);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+        client = HttpClients.create(HttpClients.Config.defaults().withVersion(HttpClient.Version.HTTP_1_1));
+
+        // Size the stream from the length of one line
+        HttpRequest probe = HttpRequest.newBuilder(server.uri("/stream/1")).build();
+        long lineBytes = client.send(probe, StreamingBodyHandlers.ofByteCount()).body();
+        long lines = Math.max(1, bodyBytes / lineBytes);
+        request = HttpRequest.newBuilder(server.uri("/stream/" + lines)).build();
+
+        file = Files.createTempFile("streaming-body-", ".json");
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int ofString(RetainedHeap heap) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+    }
+
+    @Benchmark
+    public int streamingJson(RetainedHeap heap) throws IOException, InterruptedException {
+        return client.send(request, StreamingBodyHandlers.ofJson(ObjectCounter::new)).body().objects;
+    }
+
+    @Benchmark
+    public long byteCount(RetainedHeap heap) throws IOException, InterruptedException {
+        return client.send(request, StreamingBodyHandlers.ofByteCount()).body();
+    }
+
+    @Benchmark
+    public long fileChannel(RetainedHeap heap) throws IOException, InterruptedException {
+        return client.send(request, StreamingBodyHandlers.ofFileChannel(channel, 0)).body();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.java13;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the greeting from {@link TextBlocks} with a text block and
+ * {@code formatted}, with plain concatenation and with a StringBuilder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class TextBlocksBenchmark {
+
+    // Non-final so the values are not constant-folded
+    String name = "Alice";
+    int age = 30;
+
+    @Benchmark
+    public String textBlockFormatted() {
+        return """
+                Hello, %s!
+                You are %d years old.
+                Welcome to our service.
+                """.formatted(name, age);
+    }
+
+    @Benchmark
+    public String concatenation() {
+        return "Hello, " + name + "!\n" +
+               "You are " + age + " years old.\n" +
+               "Welcome to our service.\n";
+    }
+
+    @Benchmark
+    public String stringBuilder() {
+        return new StringBuilder()
+                .append("Hello, ").append(name).append("!\n")
+                .append("You are ").append(age).append(" years old.\n")
+                .append("Welcome to our service.\n")
+                .toString();
+    }
+}
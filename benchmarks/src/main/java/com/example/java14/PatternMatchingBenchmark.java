@@ -0,0 +1,101 @@
+package com.example.java14;
+
+import com.example.java14.PatternMatchingForInstanceOf.Circle;
+import com.example.java14.PatternMatchingForInstanceOf.Rectangle;
+import com.example.java14.PatternMatchingForInstanceOf.Shape;
+import com.example.java14.PatternMatchingForInstanceOf.Triangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the instanceof chains from {@link PatternMatchingForInstanceOf} with the
+ * equivalent pattern-matching switch over the same mixed shape array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class PatternMatchingBenchmark {
+
+    private static final int COUNT = 1024;
+
+    Shape[] shapes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        shapes = new Shape[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            shapes[i] = switch (random.nextInt(3)) {
+                case 0 -> new Circle(1 + random.nextDouble());
+                case 1 -> new Rectangle(1 + random.nextDouble(), 1 + random.nextDouble());
+                default -> new Triangle(3.0, 4.0, 5.0);
+            };
+        }
+    }
+
+    @Benchmark
+    public double traditionalInstanceOfCast() {
+        double totalArea = 0.0;
+        for (Shape shape : shapes) {
+            if (shape instanceof Circle) {
+                Circle c = (Circle) shape;
+                totalArea += Math.PI * c.radius * c.radius;
+            } else if (shape instanceof Rectangle) {
+                Rectangle r = (Rectangle) shape;
+                totalArea += r.length * r.width;
+            } else if (shape instanceof Triangle) {
+                Triangle t = (Triangle) shape;
+                totalArea += heron(t);
+            }
+        }
+        return totalArea;
+    }
+
+    @Benchmark
+    public double instanceOfPattern() {
+        double totalArea = 0.0;
+        for (Shape shape : shapes) {
+            if (shape instanceof Circle c) {
+                totalArea += Math.PI * c.radius * c.radius;
+            } else if (shape instanceof Rectangle r) {
+                totalArea += r.length * r.width;
+            } else if (shape instanceof Triangle t) {
+                totalArea += heron(t);
+            }
+        }
+        return totalArea;
+    }
+
+    @Benchmark
+    public double switchPattern() {
+        double totalArea = 0.0;
+        for (Shape shape : shapes) {
+            totalArea += switch (shape) {
+                case Circle c -> Math.PI * c.radius * c.radius;
+                case Rectangle r -> r.length * r.width;
+                case Triangle t -> heron(t);
+                default -> 0.0;
+            };
+        }
+        return totalArea;
+    }
+
+    private static double heron(Triangle t) {
+        double s = (t.side1 + t.side2 + t.side3) / 2;
+        return Math.sqrt(s * (s - t.side1) * (s - t.side2) * (s - t.side3));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.java14;
+
+import com.example.java14.RecordsExample.Point;
+import com.example.java14.RecordsExample.TraditionalPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated equals/hashCode of a record ({@link Point}) with the
+ * hand-written ones of {@link TraditionalPoint} from {@link RecordsExample}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class RecordsBenchmark {
+
+    private static final int COUNT = 1024;
+
+    Point[] points;
+    Point[] pointCopies;
+    TraditionalPoint[] traditionalPoints;
+    TraditionalPoint[] traditionalCopies;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        points = new Point[COUNT];
+        pointCopies = new Point[COUNT];
+        traditionalPoints = new TraditionalPoint[COUNT];
+        traditionalCopies = new TraditionalPoint[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            int x = random.nextInt(100);
+            int y = random.nextInt(100);
+            points[i] = new Point(x, y);
+            pointCopies[i] = new Point(x, random.nextBoolean() ? y : y + 1);
+            traditionalPoints[i] = new TraditionalPoint(x, y);
+            traditionalCopies[i] = new TraditionalPoint(x, pointCopies[i].y());
+        }
+    }
+
+    @Benchmark
+    public int recordEquals() {
+        int equal = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (points[i].equals(pointCopies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    public int traditionalEquals() {
+        int equal = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (traditionalPoints[i].equals(traditionalCopies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    public int recordHashCode() {
+        int hash = 0;
+        for (Point point : points) {
+            hash += point.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int traditionalHashCode() {
+        int hash = 0;
+        for (TraditionalPoint point : traditionalPoints) {
+            hash += point.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public Set<Point> recordHashSet() {
+        return new HashSet<>(Arrays.asList(points));
+    }
+
+    @Benchmark
+    public Set<TraditionalPoint> traditionalHashSet() {
+        return new HashSet<>(Arrays.asList(traditionalPoints));
+    }
+}
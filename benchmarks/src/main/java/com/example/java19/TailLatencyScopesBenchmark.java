@@ -0,0 +1,88 @@
+package com.example.java19;
+
+import com.example.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (see the p0.99 rows of the SampleTime output) of single, hedged
+ * and quorum requests against a backend with a long-tail (log-normal) latency.
+ *
+ * The hedge delay is the backend's own latency at {@code hedgePercentile}, measured
+ * from 100,000 samples during setup.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Threads(8)
+@State(Scope.Benchmark)
+public class TailLatencyScopesBenchmark {
+
+    @Param({"1.0"})
+    double sigma;
+
+    @Param({"95"})
+    double hedgePercentile;
+
+    SimulatedBackend backend;
+    Duration hedgeDelay;
+
+    @Setup
+    public void setUp() {
+        backend = new SimulatedBackend("long-tail", Duration.ofMillis(2), sigma, 0.0);
+        LatencyHistogram distribution = new LatencyHistogram();
+        for (int i = 0; i < 100_000; i++) {
+            distribution.record(backend.sampleLatency().toNanos());
+        }
+        hedgeDelay = Duration.ofNanos(distribution.percentileNanos(hedgePercentile));
+    }
+
+    @Benchmark
+    public String single() throws Exception {
+        return backend.call(() -> "single");
+    }
+
+    @Benchmark
+    public String hedged() throws Exception {
+        return HedgingScope.call(() -> backend.call(() -> "hedged"), hedgeDelay, 2, Duration.ofSeconds(10));
+    }
+
+    @Benchmark
+    public List<String> quorumTwoOfThree() throws Exception {
+        try (var scope = new QuorumScope<String>(2, 3)) {
+            for (int i = 0; i < 3; i++) {
+                scope.fork(() -> backend.call(() -> "replica"));
+            }
+            scope.join();
+            return scope.results();
+        }
+    }
+
+    @Benchmark
+    public List<String> allThree() throws Exception {
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            var first = scope.fork(() -> backend.call(() -> "replica"));
+            var second = scope.fork(() -> backend.call(() -> "replica"));
+            var third = scope.fork(() -> backend.call(() -> "replica"));
+            scope.join().throwIfFailed();
+            return List.of(first.get(), second.get(), third.get());
+        }
+    }
+}
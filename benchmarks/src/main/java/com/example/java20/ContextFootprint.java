@@ -0,0 +1,103 @@
+package com.example.java20;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * Heap retained per virtual thread when a request context is propagated to a very large
+ * number of subtasks, comparing no context, a ScopedValue ({@link RequestContext}) and an
+ * InheritableThreadLocal.
+ *
+ * Each mode forks the same number of virtual threads in a StructuredTaskScope; every thread
+ * reads the context and then parks, so all of them are alive when the heap is measured.
+ * The difference to the "none" row is the cost of the propagation mechanism itself.
+ * This is a plain main rather than a JMH benchmark because it measures retained memory:
+ * <pre>
+ *   java --enable-preview -Xmx4g -cp benchmarks/target/benchmarks.jar com.example.java20.ContextFootprint [threads]
+ * </pre>
+ */
+public class ContextFootprint {
+
+    private static final InheritableThreadLocal<RequestContext> THREAD_LOCAL = new InheritableThreadLocal<>();
+    private static final RequestContext CONTEXT = new RequestContext("req-1", "alice", "tx-1");
+
+    private enum Mode { NONE, SCOPED_VALUE, INHERITABLE_THREAD_LOCAL }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Warm up class loading and JIT so the first measured mode is not penalised
+        for (Mode mode : Mode.values()) {
+            measure(mode, 10_000);
+        }
+
+        System.out.println("mode,threads,heap_mb,bytes_per_thread,fork_ms");
+        for (Mode mode : Mode.values()) {
+            measure(mode, threads).print();
+        }
+    }
+
+    private record Result(Mode mode, int threads, long heapBytes, long forkNanos) {
+        void print() {
+            System.out.println(String.format(Locale.ROOT, "%s,%d,%.1f,%d,%d",
+                    mode.name().toLowerCase(Locale.ROOT), threads, heapBytes / 1e6,
+                    heapBytes / threads, forkNanos / 1_000_000));
+        }
+    }
+
+    private static Result measure(Mode mode, int threads) throws Exception {
+        return switch (mode) {
+            case NONE -> forkAndMeasure(mode, threads, () -> 1);
+            case SCOPED_VALUE -> CONTEXT.call(() ->
+                    forkAndMeasure(mode, threads, () -> RequestContext.current().requestId().length()));
+            case INHERITABLE_THREAD_LOCAL -> {
+                THREAD_LOCAL.set(CONTEXT);
+                try {
+                    yield forkAndMeasure(mode, threads, () -> THREAD_LOCAL.get().requestId().length());
+                } finally {
+                    THREAD_LOCAL.remove();
+                }
+            }
+        };
+    }
+
+    private static Result forkAndMeasure(Mode mode, int threads, ContextRead read) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+
+        long baseline = usedHeapAfterGc(memory);
+        long start = System.nanoTime();
+        try (var scope = new StructuredTaskScope<Integer>()) {
+            for (int i = 0; i < threads; i++) {
+                scope.fork(() -> {
+                    int value = read.read();
+                    started.countDown();
+                    release.await();
+                    return value;
+                });
+            }
+            started.await();
+            long forkNanos = System.nanoTime() - start;
+            long used = usedHeapAfterGc(memory);
+            release.countDown();
+            scope.join();
+            return new Result(mode, threads, used - baseline, forkNanos);
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @FunctionalInterface
+    private interface ContextRead {
+        int read();
+    }
+}
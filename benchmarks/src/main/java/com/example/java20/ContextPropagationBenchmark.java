@@ -0,0 +1,118 @@
+package com.example.java20;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading, binding and propagating a {@link RequestContext} held in a ScopedValue
+ * versus the same context in an InheritableThreadLocal.
+ *
+ * The read benchmarks do {@value #READS} lookups per binding and report the time per lookup.
+ * The fork benchmarks start {@code subtasks} virtual threads in a StructuredTaskScope that
+ * each read the context; with the InheritableThreadLocal every new thread copies its parent's
+ * map. Memory footprint at a million threads is measured separately by {@link ContextFootprint}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class ContextPropagationBenchmark {
+
+    static final int READS = 1_000;
+
+    static final InheritableThreadLocal<RequestContext> THREAD_LOCAL = new InheritableThreadLocal<>();
+
+    @Param({"100"})
+    int subtasks;
+
+    final RequestContext context = new RequestContext("req-1", "alice", "tx-1");
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int scopedValueRead() throws Exception {
+        return context.call(() -> {
+            int sum = 0;
+            for (int i = 0; i < READS; i++) {
+                sum += RequestContext.current().requestId().length();
+            }
+            return sum;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int threadLocalRead() {
+        THREAD_LOCAL.set(context);
+        try {
+            int sum = 0;
+            for (int i = 0; i < READS; i++) {
+                sum += THREAD_LOCAL.get().requestId().length();
+            }
+            return sum;
+        } finally {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    @Benchmark
+    public int scopedValueBind() throws Exception {
+        return context.call(() -> RequestContext.current().requestId().length());
+    }
+
+    @Benchmark
+    public int threadLocalBind() {
+        THREAD_LOCAL.set(context);
+        try {
+            return THREAD_LOCAL.get().requestId().length();
+        } finally {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    @Benchmark
+    public int scopedValueFork() throws Exception {
+        return context.call(() -> fork(() -> RequestContext.current().requestId().length()));
+    }
+
+    @Benchmark
+    public int threadLocalFork() throws Exception {
+        THREAD_LOCAL.set(context);
+        try {
+            return fork(() -> THREAD_LOCAL.get().requestId().length());
+        } finally {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    private int fork(Callable<Integer> read) throws InterruptedException {
+        List<StructuredTaskScope.Subtask<Integer>> forked = new ArrayList<>(subtasks);
+        try (var scope = new StructuredTaskScope<Integer>()) {
+            for (int i = 0; i < subtasks; i++) {
+                forked.add(scope.fork(read));
+            }
+            scope.join();
+        }
+        int sum = 0;
+        for (StructuredTaskScope.Subtask<Integer> subtask : forked) {
+            sum += subtask.get();
+        }
+        return sum;
+    }
+}
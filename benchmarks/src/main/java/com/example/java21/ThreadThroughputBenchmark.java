@@ -0,0 +1,91 @@
+package com.example.java21;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task throughput of platform versus virtual threads, replacing the one-shot
+ * Instant.now() timings in {@link VirtualThreads#main}.
+ *
+ * Each operation submits {@code tasks} tasks that each block for {@code blockMillis}
+ * and waits for all of them to finish.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ThreadThroughputBenchmark {
+
+    @Param({"1000", "10000"})
+    int tasks;
+
+    @Param({"0", "1", "10"})
+    int blockMillis;
+
+    @Param({"200"})
+    int platformPoolSize;
+
+    ExecutorService platformPool;
+    ExecutorService virtualExecutor;
+    List<Callable<Integer>> work;
+
+    @Setup
+    public void setUp() {
+        platformPool = Executors.newFixedThreadPool(platformPoolSize);
+        virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        work = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int id = i;
+            work.add(() -> {
+                if (blockMillis > 0) {
+                    Thread.sleep(blockMillis);
+                }
+                return id;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.close();
+        virtualExecutor.close();
+    }
+
+    @Benchmark
+    public int platformThreadPool() throws Exception {
+        return runAll(platformPool);
+    }
+
+    @Benchmark
+    public int virtualThreadPerTask() throws Exception {
+        return runAll(virtualExecutor);
+    }
+
+    private int runAll(ExecutorService executor) throws Exception {
+        int sum = 0;
+        for (Future<Integer> future : executor.invokeAll(work)) {
+            sum += future.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@code Collectors.groupingBy} with counting, summing and max downstreams against the
+ * {@link PrimitiveCollectors} equivalents, sequential and parallel.
+ *
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} divided by {@code size} is the
+ * allocation per element, about 16 bytes for the boxed collectors and close to zero for the
+ * primitive ones. {@code keys} is the number of distinct keys; with 100000 the maps no longer
+ * fit in the L1 cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class GroupingCollectorsBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"60", "100000"})
+    int keys;
+
+    List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person("Person " + i, 18 + random.nextInt(keys)));
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Long> boxedCount() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongMap primitiveCount() {
+        return persons.stream()
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> boxedCountParallel() {
+        return persons.parallelStream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongMap primitiveCountParallel() {
+        return persons.parallelStream()
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> boxedSumNameLength() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.summingLong(p -> p.getName().length())));
+    }
+
+    @Benchmark
+    public IntLongMap primitiveSumNameLength() {
+        return persons.stream()
+                .collect(PrimitiveCollectors.summingByInt(Person::getAge, p -> p.getName().length()));
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> boxedMaxNameLength() {
+        return persons.stream()
+                .collect(Collectors.toMap(Person::getAge, p -> p.getName().length(), Math::max));
+    }
+
+    @Benchmark
+    public IntLongMap primitiveMaxNameLength() {
+        return persons.stream()
+                .collect(PrimitiveCollectors.maxByInt(Person::getAge, p -> p.getName().length()));
+    }
+}
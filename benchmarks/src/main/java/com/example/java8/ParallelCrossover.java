@@ -0,0 +1,88 @@
+package com.example.java8;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs {@link ParallelStreamsBenchmark} and reports, for every pipeline, source, cost and
+ * parallelism, the data size from which the parallel stream is faster than the sequential one.
+ *
+ * The crossover is the smallest measured size at which parallel wins at that size and every
+ * larger one, or "none" if it does not win at the largest size. The speedups (sequential time
+ * over parallel time) per size follow, so a wide margin can be told from a marginal one.
+ * Any JMH option is accepted; narrow the sweep with {@code -p}:
+ * <pre>
+ *   java --enable-preview -cp benchmarks/target/benchmarks.jar com.example.java8.ParallelCrossover \
+ *       -p source=ARRAY_LIST,LINKED_LIST -p cost=0 -p parallelism=0,4
+ * </pre>
+ * The {@code parallelism} values must include 0, the sequential baseline.
+ */
+public class ParallelCrossover {
+
+    private record Key(String pipeline, String source, int cost, int parallelism) {}
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ParallelStreamsBenchmark.class.getSimpleName())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        // Average time per pipeline, source, cost and parallelism, by size
+        Map<Key, TreeMap<Integer, Double>> times = new TreeMap<>(Comparator.comparing(Key::pipeline)
+                .thenComparing(Key::source)
+                .thenComparingInt(Key::cost)
+                .thenComparingInt(Key::parallelism));
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            Key key = new Key(benchmark.substring(benchmark.lastIndexOf('.') + 1),
+                    result.getParams().getParam("source"),
+                    Integer.parseInt(result.getParams().getParam("cost")),
+                    Integer.parseInt(result.getParams().getParam("parallelism")));
+            times.computeIfAbsent(key, k -> new TreeMap<>())
+                    .put(Integer.parseInt(result.getParams().getParam("size")), result.getPrimaryResult().getScore());
+        }
+
+        System.out.println("pipeline,source,cost,parallelism,crossoverSize,speedups");
+        for (Map.Entry<Key, TreeMap<Integer, Double>> entry : times.entrySet()) {
+            Key key = entry.getKey();
+            TreeMap<Integer, Double> sequential = times.get(new Key(key.pipeline(), key.source(), key.cost(), 0));
+            if (key.parallelism() == 0 || sequential == null) {
+                continue;
+            }
+            System.out.println(row(key, sequential, entry.getValue()));
+        }
+    }
+
+    private static String row(Key key, TreeMap<Integer, Double> sequential, TreeMap<Integer, Double> parallel) {
+        List<String> speedups = new ArrayList<>();
+        Integer crossover = null;
+        for (Map.Entry<Integer, Double> entry : parallel.entrySet()) {
+            Double sequentialTime = sequential.get(entry.getKey());
+            if (sequentialTime == null) {
+                continue;
+            }
+            double speedup = sequentialTime / entry.getValue();
+            speedups.add(String.format(Locale.ROOT, "%d:%.2f", entry.getKey(), speedup));
+            if (speedup <= 1) {
+                crossover = null;
+            } else if (crossover == null) {
+                crossover = entry.getKey();
+            }
+        }
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%s,%s",
+                key.pipeline(), key.source(), key.cost(), key.parallelism(),
+                crossover == null ? "none" : crossover, String.join(" ", speedups));
+    }
+}
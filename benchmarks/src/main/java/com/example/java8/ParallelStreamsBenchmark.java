@@ -0,0 +1,149 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The {@link StreamsAPI} pipelines, sequential and parallel, swept over data size, stream
+ * source, per-element cost and ForkJoinPool parallelism, to find where parallel streams pay off.
+ *
+ * {@code parallelism} 0 runs the pipeline sequentially; any other value runs it as a parallel
+ * stream inside a ForkJoinPool of that parallelism, which parallel streams use instead of the
+ * common pool when started from one of its tasks. {@code cost} is the number of
+ * {@link Blackhole#consumeCPU} tokens spent on each element before the pipeline's own work.
+ *
+ * The full matrix takes hours; narrow it with {@code -p}, or run {@link ParallelCrossover}
+ * to get the sequential/parallel crossover size of each combination.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ParallelStreamsBenchmark {
+
+    public enum Source { ARRAY_LIST, LINKED_LIST, ARRAYS_AS_LIST, INT_RANGE }
+
+    private static final String[] NAMES = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"ARRAY_LIST", "LINKED_LIST", "ARRAYS_AS_LIST", "INT_RANGE"})
+    Source source;
+
+    @Param({"0", "50", "500"})
+    int cost;
+
+    @Param({"0", "2", "4", "8"})
+    int parallelism;
+
+    Person[] persons;
+    List<Person> list;
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new Person[size];
+        for (int i = 0; i < size; i++) {
+            persons[i] = new Person(NAMES[random.nextInt(NAMES.length)], 18 + random.nextInt(60));
+        }
+        list = switch (source) {
+            case ARRAY_LIST -> new ArrayList<>(Arrays.asList(persons));
+            case LINKED_LIST -> new LinkedList<>(Arrays.asList(persons));
+            case ARRAYS_AS_LIST, INT_RANGE -> Arrays.asList(persons);
+        };
+        pool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public long filterCount() {
+        return run(s -> s.filter(p -> p.getAge() > 25).count());
+    }
+
+    @Benchmark
+    public double averageAge() {
+        return run(s -> s.mapToInt(Person::getAge).average().orElse(0));
+    }
+
+    @Benchmark
+    public Optional<Person> oldestByReduce() {
+        return run(s -> s.reduce((p1, p2) -> p1.getAge() > p2.getAge() ? p1 : p2));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> countByAge() {
+        return run(s -> s.collect(Collectors.groupingBy(Person::getAge, Collectors.counting())));
+    }
+
+    @Benchmark
+    public List<String> collectNames() {
+        return run(s -> s.map(Person::getName).collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public List<Person> sortByAgeThenName() {
+        return run(s -> s.sorted(Comparator.comparingInt(Person::getAge)
+                        .thenComparing(Person::getName))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Applies the pipeline to a stream from the source, in the pool when running in parallel.
+     */
+    private <R> R run(Function<Stream<Person>, R> pipeline) {
+        if (pool == null) {
+            return pipeline.apply(stream());
+        }
+        return pool.submit(() -> pipeline.apply(stream().parallel())).join();
+    }
+
+    private Stream<Person> stream() {
+        Stream<Person> stream = source == Source.INT_RANGE
+                ? IntStream.range(0, size).mapToObj(i -> persons[i])
+                : list.stream();
+        return cost == 0 ? stream : stream.map(this::work);
+    }
+
+    private Person work(Person person) {
+        Blackhole.consumeCPU(cost);
+        return person;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link StreamsAPI} pipelines over a {@code List<Person>} against the same operations on
+ * a {@link PersonTable}, for 10M rows. Each {@code stream*} benchmark has a {@code table*}
+ * counterpart computing the same result.
+ *
+ * The list is built in one go, so its Person objects sit next to each other on the heap; in a
+ * long-running application they are scattered and the stream versions get slower still.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class PersonTableBenchmark {
+
+    private static final String[] NAMES = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+
+    @Param({"10000000"})
+    int size;
+
+    List<Person> persons;
+    PersonTable table;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)] + " " + (char) ('A' + random.nextInt(26)) + ".";
+            persons.add(new Person(name, 18 + random.nextInt(60)));
+        }
+        table = PersonTable.of(persons);
+    }
+
+    @Benchmark
+    public long streamFilterCount() {
+        return persons.stream()
+                .filter(p -> p.getAge() > 25)
+                .count();
+    }
+
+    @Benchmark
+    public long tableFilterCount() {
+        return table.countByAge(age -> age > 25);
+    }
+
+    @Benchmark
+    public long streamFilterByName() {
+        return persons.stream()
+                .filter(p -> p.getName().startsWith("A"))
+                .count();
+    }
+
+    @Benchmark
+    public int tableFilterByName() {
+        return table.filterByName(name -> name.startsWith("A")).size();
+    }
+
+    @Benchmark
+    public double streamAverageAge() {
+        return persons.stream()
+                .mapToInt(Person::getAge)
+                .average()
+                .orElse(0);
+    }
+
+    @Benchmark
+    public double tableAverageAge() {
+        return table.averageAge().orElse(0);
+    }
+
+    @Benchmark
+    public Optional<Person> streamOldest() {
+        return persons.stream()
+                .reduce((p1, p2) -> p1.getAge() > p2.getAge() ? p1 : p2);
+    }
+
+    @Benchmark
+    public Optional<Person> tableOldest() {
+        return table.oldest();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> streamCountByAge() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> tableCountByAge() {
+        return table.countPerAge();
+    }
+
+    @Benchmark
+    public Map<Integer, List<Person>> streamGroupByAge() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge));
+    }
+
+    @Benchmark
+    public Map<Integer, PersonTable> tableGroupByAge() {
+        return table.groupByAge();
+    }
+
+    @Benchmark
+    public List<Person> streamSortByAgeThenName() {
+        return persons.stream()
+                .sorted(Comparator.comparingInt(Person::getAge)
+                        .thenComparing(Person::getName))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public PersonTable tableSortByAgeThenName() {
+        return table.sortedByAgeThenName();
+    }
+}
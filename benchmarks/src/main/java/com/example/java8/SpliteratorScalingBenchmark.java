@@ -0,0 +1,119 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parse-and-aggregate and aggregate-only pipelines as parallel streams at increasing
+ * ForkJoinPool parallelism, to show which sources scale with the number of cores.
+ *
+ * The file benchmarks parse "name,age" lines into Persons and count them per age. A
+ * {@code BufferedReader.lines()} stream splits its iterator into batches and scales poorly;
+ * {@code Files.lines} and {@link MappedLineSpliterator} split the mapped file on line
+ * boundaries, and the latter also splits files over 2 GB. The in-memory benchmarks count an
+ * {@code ArrayList} and a {@link PersonTable} per age.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class SpliteratorScalingBenchmark {
+
+    private static final String[] NAMES = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+
+    @Param({"5000000"})
+    int size;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    Path file;
+    List<Person> persons;
+    PersonTable table;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        persons = new ArrayList<>(size);
+        List<String> lines = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Person person = new Person(NAMES[random.nextInt(NAMES.length)], 18 + random.nextInt(60));
+            persons.add(person);
+            lines.add(person.getName() + "," + person.getAge());
+        }
+        file = Files.createTempFile("persons", ".csv");
+        Files.write(file, lines);
+        table = PersonTable.of(persons);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public IntLongMap fileBufferedReaderLines() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return parseAndCount(reader.lines());
+        }
+    }
+
+    @Benchmark
+    public IntLongMap fileFilesLines() throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return parseAndCount(lines);
+        }
+    }
+
+    @Benchmark
+    public IntLongMap fileMappedLines() throws IOException {
+        try (Stream<String> lines = MappedLineSpliterator.lines(file)) {
+            return parseAndCount(lines);
+        }
+    }
+
+    @Benchmark
+    public IntLongMap listCountByAge() {
+        return pool.submit(() -> persons.parallelStream()
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge))).join();
+    }
+
+    @Benchmark
+    public IntLongMap tableCountByAge() {
+        return pool.submit(() -> table.parallelStream()
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge))).join();
+    }
+
+    private IntLongMap parseAndCount(Stream<String> lines) {
+        return pool.submit(() -> lines.parallel()
+                .map(Person::parse)
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge))).join();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the stream pipelines shown in {@link StreamsAPI} over larger inputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class StreamsApiBenchmark {
+
+    private static final String[] NAMES = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+
+    @Param({"1000", "100000"})
+    int size;
+
+    List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person(NAMES[random.nextInt(NAMES.length)], 18 + random.nextInt(60)));
+        }
+    }
+
+    @Benchmark
+    public long filterCount() {
+        return persons.stream()
+                .filter(p -> p.getAge() > 25)
+                .count();
+    }
+
+    @Benchmark
+    public List<Person> sortByAgeThenName() {
+        return persons.stream()
+                .sorted(Comparator.comparingInt(Person::getAge)
+                        .thenComparing(Person::getName))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public String joinNames() {
+        return persons.stream()
+                .map(Person::getName)
+                .collect(Collectors.joining(", "));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Person>> groupByAge() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> countByAge() {
+        return persons.stream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Optional<Person> oldestByReduce() {
+        return persons.stream()
+                .reduce((p1, p2) -> p1.getAge() > p2.getAge() ? p1 : p2);
+    }
+
+    @Benchmark
+    public double averageAge() {
+        return persons.stream()
+                .mapToInt(Person::getAge)
+                .average()
+                .orElse(0);
+    }
+
+    @Benchmark
+    public long parallelFilterCount() {
+        return persons.parallelStream()
+                .filter(p -> p.getAge() > 25)
+                .count();
+    }
+}
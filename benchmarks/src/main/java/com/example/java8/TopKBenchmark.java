@@ -0,0 +1,113 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@code sorted(comparator).limit(k)} against the {@link SortingCollectors} top-K collectors,
+ * and a full sort by age against {@link SortingCollectors#sortedByInt}, over 10M persons.
+ *
+ * {@code k} lives in its own state so that the full-sort benchmarks, which do not use it,
+ * run once rather than once per k.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class TopKBenchmark {
+
+    private static final String[] NAMES = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+    private static final Comparator<Person> BY_AGE = Comparator.comparingInt(Person::getAge);
+
+    @State(Scope.Benchmark)
+    public static class Limit {
+        @Param({"10", "1000"})
+        int k;
+    }
+
+    @Param({"10000000"})
+    int size;
+
+    List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person(NAMES[random.nextInt(NAMES.length)], 18 + random.nextInt(60)));
+        }
+    }
+
+    @Benchmark
+    public List<Person> sortedLimit(Limit limit) {
+        return persons.stream()
+                .sorted(BY_AGE)
+                .limit(limit.k)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Person> topK(Limit limit) {
+        return persons.stream()
+                .collect(SortingCollectors.topK(BY_AGE, limit.k));
+    }
+
+    @Benchmark
+    public List<Person> topKByInt(Limit limit) {
+        return persons.stream()
+                .collect(SortingCollectors.topKByInt(Person::getAge, limit.k));
+    }
+
+    @Benchmark
+    public List<Person> sortedLimitParallel(Limit limit) {
+        return persons.parallelStream()
+                .sorted(BY_AGE)
+                .limit(limit.k)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Person> topKParallel(Limit limit) {
+        return persons.parallelStream()
+                .collect(SortingCollectors.topK(BY_AGE, limit.k));
+    }
+
+    @Benchmark
+    public List<Person> topKByIntParallel(Limit limit) {
+        return persons.parallelStream()
+                .collect(SortingCollectors.topKByInt(Person::getAge, limit.k));
+    }
+
+    @Benchmark
+    public List<Person> sortedFull() {
+        return persons.stream()
+                .sorted(BY_AGE)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Person> sortedByIntRadix() {
+        return persons.stream()
+                .collect(SortingCollectors.sortedByInt(Person::getAge));
+    }
+}
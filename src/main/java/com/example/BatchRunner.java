@@ -0,0 +1,337 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-interactive driver for the examples, intended for unattended (e.g. nightly) runs.
+ *
+ * Usage:
+ * <pre>
+ *   java --enable-preview -cp ... com.example.Main --run all
+ *   java --enable-preview -cp ... com.example.Main --run "java21.*" --format csv --report results.csv
+ *   java --enable-preview -cp ... com.example.Main --run all --parallel 8 --timeout 60
+ * </pre>
+ *
+ * Each selected example runs on its own thread without waiting for input. For every example the
+ * wall-clock time, the CPU time and the bytes allocated by that thread are recorded and written
+ * as a JSON or CSV summary, so runs on different JDK builds can be diffed. Threads started by
+ * an example are not included in its CPU and allocation figures.
+ *
+ * With --parallel N up to N examples run at once. Their output is captured per example
+ * (see {@link OutputCapture}) and printed afterwards in selection order. With --timeout an
+ * example still running after the given number of seconds is interrupted and reported as "timeout";
+ * if it ignores the interrupt for a further second it is reported as "timeout (still running)",
+ * since it may then overlap, and skew the figures of, the examples that follow.
+ */
+public final class BatchRunner {
+
+    // How long a timed-out example may take to stop after being interrupted
+    private static final Duration TIMEOUT_GRACE = Duration.ofSeconds(1);
+
+    private BatchRunner() {}
+
+    /**
+     * Metrics captured for a single example run. A value of -1 means the JVM
+     * does not support that measurement.
+     */
+    public record Result(String className, String status, String error,
+                         long wallNanos, long cpuNanos, long allocatedBytes) {}
+
+    /**
+     * Returns true if the command line requests batch mode rather than the interactive menu.
+     */
+    public static boolean isBatchMode(String[] args) {
+        return args.length > 0 && args[0].equals("--run");
+    }
+
+    /**
+     * Runs the examples selected on the command line and writes the summary.
+     *
+     * @return the process exit code: 0 if all examples succeeded, 1 if any failed, 2 on bad usage
+     */
+    public static int run(String[] args) {
+        String pattern = null;
+        String format = "json";
+        Path report = null;
+        int parallelism = 1;
+        Duration timeout = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                return usage("Missing value for " + args[i]);
+            }
+            String option = args[i];
+            try {
+                switch (option) {
+                    case "--run" -> pattern = args[++i];
+                    case "--format" -> format = args[++i];
+                    case "--report" -> report = Path.of(args[++i]);
+                    case "--parallel" -> parallelism = Integer.parseInt(args[++i]);
+                    case "--timeout" -> timeout = Duration.ofSeconds(Long.parseLong(args[++i]));
+                    default -> {
+                        return usage("Unknown option: " + option);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return usage("Invalid value for " + option + ": " + args[i]);
+            }
+        }
+        if (pattern == null) {
+            return usage("Missing --run");
+        }
+        if (!format.equals("json") && !format.equals("csv")) {
+            return usage("Unsupported format: " + format);
+        }
+        if (parallelism < 1) {
+            return usage("--parallel must be at least 1");
+        }
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            return usage("--timeout must be at least 1");
+        }
+
+        List<String> selected = ExampleRegistry.matching(pattern);
+        if (selected.isEmpty()) {
+            return usage("No examples match: " + pattern);
+        }
+
+        List<Result> results;
+        try {
+            results = runAll(selected, parallelism, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while running examples");
+            return 1;
+        }
+
+        String summary = format.equals("csv") ? toCsv(results) : toJson(results);
+        if (report == null) {
+            System.out.println();
+            System.out.print(summary);
+        } else {
+            try {
+                Files.writeString(report, summary);
+                System.out.println("\nReport written to " + report.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Error writing report: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        return results.stream().allMatch(r -> r.status().equals("ok")) ? 0 : 1;
+    }
+
+    /**
+     * Runs the examples with at most {@code parallelism} at a time. Examples are started in
+     * selection order; when more than one may run at once their output is captured and
+     * printed in selection order after all of them have finished.
+     */
+    static List<Result> runAll(List<String> selected, int parallelism, Duration timeout)
+            throws InterruptedException {
+        boolean capture = parallelism > 1;
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<Result>> pending = new ArrayList<>();
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+
+        if (capture) {
+            OutputCapture.install();
+        }
+        try {
+            for (String className : selected) {
+                permits.acquire();
+                ByteArrayOutputStream buffer = capture ? new ByteArrayOutputStream() : null;
+                outputs.add(buffer);
+                if (!capture) {
+                    System.out.println("\n----- Running " + className + " -----");
+                }
+                CompletableFuture<Result> result = new CompletableFuture<>();
+                pending.add(result);
+                Thread.ofVirtual().name("supervisor-" + className).start(() -> {
+                    try {
+                        result.complete(supervise(className, buffer, timeout));
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        } finally {
+            if (capture) {
+                OutputCapture.uninstall();
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < selected.size(); i++) {
+            if (capture) {
+                System.out.println("\n----- Running " + selected.get(i) + " -----");
+                // writeTo copies under the buffer's lock, so a still-running example cannot grow it midway
+                try {
+                    outputs.get(i).writeTo(System.out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                System.out.flush();
+            }
+            results.add(pending.get(i).join());
+        }
+        return results;
+    }
+
+    /**
+     * Runs one example on a dedicated platform thread (so thread CPU time can be measured)
+     * and interrupts it if it exceeds the timeout.
+     */
+    private static Result supervise(String className, ByteArrayOutputStream buffer, Duration timeout) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Thread worker = Thread.ofPlatform()
+                .name("example-" + className)
+                .daemon(true)
+                .start(() -> {
+                    if (buffer != null) {
+                        OutputCapture.captureCurrentThread(buffer);
+                    }
+                    result.complete(measure(className));
+                });
+
+        try {
+            return timeout == null
+                    ? result.get()
+                    : result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Cancel the runaway example; it may keep running if it ignores interrupts
+            worker.interrupt();
+            boolean stopped;
+            try {
+                stopped = worker.join(TIMEOUT_GRACE);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                stopped = false;
+            }
+            return new Result(className, stopped ? "timeout" : "timeout (still running)",
+                    "Timed out after " + timeout.toSeconds() + "s", timeout.toNanos(), -1, -1);
+        } catch (InterruptedException e) {
+            worker.interrupt();
+            Thread.currentThread().interrupt();
+            return new Result(className, "failed", "Interrupted", -1, -1, -1);
+        } catch (ExecutionException e) {
+            return new Result(className, "failed", e.getCause().toString(), -1, -1, -1);
+        }
+    }
+
+    /**
+     * Runs one example on the current thread and records its metrics.
+     */
+    static Result measure(String className) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuSupported = threads.isCurrentThreadCpuTimeSupported();
+        if (cpuSupported && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        com.sun.management.ThreadMXBean allocations =
+                threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+                        ? sun : null;
+        if (allocations != null && !allocations.isThreadAllocatedMemoryEnabled()) {
+            allocations.setThreadAllocatedMemoryEnabled(true);
+        }
+        long threadId = Thread.currentThread().threadId();
+
+        String status = "ok";
+        String error = null;
+
+        long cpuStart = cpuSupported ? threads.getCurrentThreadCpuTime() : -1;
+        long allocStart = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+        long wallStart = System.nanoTime();
+        try {
+            ExampleRegistry.invoke(className);
+        } catch (Throwable t) {
+            status = "failed";
+            error = t.getClass().getName() + ": " + t.getMessage();
+            System.out.println("Error running example: " + error);
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+        long allocEnd = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+        long cpuEnd = cpuSupported ? threads.getCurrentThreadCpuTime() : -1;
+
+        return new Result(className, status, error, wallNanos,
+                cpuSupported ? cpuEnd - cpuStart : -1,
+                allocations != null ? allocEnd - allocStart : -1);
+    }
+
+    static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"javaVersion\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"vmName\": ").append(quote(System.getProperty("java.vm.name"))).append(",\n");
+        json.append("  \"examples\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            json.append("    {\"className\": ").append(quote(r.className()))
+                    .append(", \"status\": ").append(quote(r.status()))
+                    .append(", \"wallNanos\": ").append(r.wallNanos())
+                    .append(", \"cpuNanos\": ").append(r.cpuNanos())
+                    .append(", \"allocatedBytes\": ").append(r.allocatedBytes());
+            if (r.error() != null) {
+                json.append(", \"error\": ").append(quote(r.error()));
+            }
+            json.append(i < results.size() - 1 ? "},\n" : "}\n");
+        }
+        json.append("  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    static String toCsv(List<Result> results) {
+        StringBuilder csv = new StringBuilder("className,status,wallNanos,cpuNanos,allocatedBytes\n");
+        for (Result r : results) {
+            csv.append(r.className()).append(',')
+                    .append(r.status()).append(',')
+                    .append(r.wallNanos()).append(',')
+                    .append(r.cpuNanos()).append(',')
+                    .append(r.allocatedBytes()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: Main --run <all|pattern[,pattern...]> [--format json|csv] [--report <file>]"
+                + " [--parallel <n>] [--timeout <seconds>]");
+        System.err.println("Patterns match class names with or without the com.example. prefix, e.g. java21.*");
+        return 2;
+    }
+}
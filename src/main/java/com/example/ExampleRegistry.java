@@ -0,0 +1,147 @@
+package com.example;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Central list of the runnable examples shown in the {@link Main} menus.
+ *
+ * Used by both the interactive menu and the headless {@link BatchRunner},
+ * so every example is invoked the same way regardless of how it was selected.
+ *
+ * Each example's main method is resolved once into a {@link MethodHandle} and cached,
+ * so repeated runs skip the reflective lookup. {@link #preloadInBackground()} resolves
+ * every handle ahead of time on a virtual thread, e.g. while the menu is being shown.
+ */
+public final class ExampleRegistry {
+
+    private static final String BASE_PACKAGE = "com.example.";
+
+    private static final MethodType MAIN_TYPE = MethodType.methodType(void.class, String[].class);
+    private static final String[] NO_ARGS = new String[0];
+
+    // Resolved main methods, keyed by class name
+    private static final ConcurrentMap<String, MethodHandle> HANDLES = new ConcurrentHashMap<>();
+
+    // Every example class with a main method, in menu order
+    private static final List<String> EXAMPLES = List.of(
+            "com.example.java8.LambdaExpressions",
+            "com.example.java8.StreamsAPI",
+            "com.example.java8.DefaultMethods",
+            "com.example.java8.DateTimeAPI",
+            "com.example.java8.OptionalExample",
+            "com.example.java8.NashornExample",
+            "com.example.java9.JShellExample",
+            "com.example.java9.EnhancedProcessAPI",
+            "com.example.java9.PrivateInterfaceMethods",
+            "com.example.java10.LocalVariableTypeInference",
+            "com.example.java11.HttpClientExample",
+            "com.example.java11.StringMethodsExample",
+            "com.example.java11.SingleFileSourceExample",
+            "com.example.java12.SwitchExpressions",
+            "com.example.java13.TextBlocks",
+            "com.example.java14.RecordsExample",
+            "com.example.java14.PatternMatchingForInstanceOf",
+            "com.example.java14.HelpfulNPE",
+            "com.example.java15.SealedClasses",
+            "com.example.java17.ForeignFunctionMemoryAPI",
+            "com.example.java17.EnhancedRandomGenerators",
+            "com.example.java19.StructuredConcurrency",
+            "com.example.java20.ScopedValuesExample",
+            "com.example.java21.VirtualThreads",
+            "com.example.java21.PatternMatchingForSwitch",
+            "com.example.java21.SequencedCollections",
+            "com.example.java21.StringTemplates"
+    );
+
+    private ExampleRegistry() {}
+
+    /**
+     * All registered example class names, in menu order.
+     */
+    public static List<String> classNames() {
+        return EXAMPLES;
+    }
+
+    /**
+     * Selects examples by a comma-separated list of patterns.
+     *
+     * "all" selects everything. Other patterns are matched against the class name
+     * with or without the "com.example." prefix, and may use '*' as a wildcard,
+     * e.g. "java21.*" or "java8.StreamsAPI,java11.*".
+     */
+    public static List<String> matching(String patterns) {
+        List<Pattern> compiled = Arrays.stream(patterns.split(","))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .map(ExampleRegistry::toRegex)
+                .toList();
+
+        return EXAMPLES.stream()
+                .filter(name -> compiled.stream().anyMatch(p -> p.matcher(name).matches()
+                        || p.matcher(name.substring(BASE_PACKAGE.length())).matches()))
+                .toList();
+    }
+
+    /**
+     * Invokes the main method of the given example with no arguments.
+     * Exceptions thrown by the example itself propagate unchanged.
+     */
+    public static void invoke(String className) throws Throwable {
+        MethodHandle main = resolve(className);
+        main.invokeExact(NO_ARGS);
+    }
+
+    /**
+     * Returns the cached handle for the example's main method, loading and
+     * initializing the class on first use.
+     */
+    public static MethodHandle resolve(String className)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+        MethodHandle main = HANDLES.get(className);
+        if (main == null) {
+            Class<?> clazz = Class.forName(className);
+            main = MethodHandles.publicLookup().findStatic(clazz, "main", MAIN_TYPE);
+            MethodHandle existing = HANDLES.putIfAbsent(className, main);
+            if (existing != null) {
+                main = existing;
+            }
+        }
+        return main;
+    }
+
+    /**
+     * Loads every example class and resolves its main method on a background virtual thread.
+     * Failures are ignored here; they are reported when the example is actually run.
+     *
+     * @return the started preload thread
+     */
+    public static Thread preloadInBackground() {
+        return Thread.ofVirtual().name("example-preload").start(() -> {
+            for (String className : EXAMPLES) {
+                try {
+                    resolve(className);
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    // Leave unresolved; invoke() reports the error to the user
+                }
+            }
+        });
+    }
+
+    private static Pattern toRegex(String glob) {
+        if (glob.equals("all")) {
+            return Pattern.compile(".*");
+        }
+        String regex = Arrays.stream(glob.split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*"));
+        return Pattern.compile(regex);
+    }
+}
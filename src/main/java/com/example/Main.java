@@ -6,10 +6,22 @@ import java.util.Scanner;
 /**
  * Main driver class for the Java 8 to Java 21 Features Demo.
  * Provides a menu-based interface to navigate and run examples for different Java features.
+ * Passing "--run &lt;pattern&gt;" runs the matching examples headlessly instead (see {@link BatchRunner}).
+ *
+ * In interactive mode the example classes are preloaded in the background while the menu
+ * is shown; start with -Dexamples.preload=false to disable this.
  */
 public class Main {
 
     public static void main(String[] args) {
+        if (BatchRunner.isBatchMode(args)) {
+            System.exit(BatchRunner.run(args));
+        }
+        
+        if (Boolean.parseBoolean(System.getProperty("examples.preload", "true"))) {
+            ExampleRegistry.preloadInBackground();
+        }
+        
         Scanner scanner = new Scanner(System.in);
         boolean exit = false;
         
@@ -418,6 +430,7 @@ public class Main {
         System.out.println("1. Virtual Threads (Preview)");
         System.out.println("2. Structured Concurrency (Preview)");
         System.out.println("3. Pattern Matching (Preview Features)");
+        System.out.println("4. Scoped Values (Preview)");
         System.out.println("0. Back to Main Menu");
         System.out.print("Enter your choice: ");
         
@@ -439,6 +452,9 @@ public class Main {
                     System.out.println("See the Pattern Matching examples in Java 21.");
                     runExample("com.example.java21.PatternMatchingForSwitch");
                     break;
+                case 4:
+                    runExample("com.example.java20.ScopedValuesExample");
+                    break;
                 case 0:
                     // Return to main menu
                     break;
@@ -496,12 +512,10 @@ public class Main {
         System.out.println("Press Enter to continue after the example completes...");
         
         try {
-            Class<?> clazz = Class.forName(className);
-            java.lang.reflect.Method mainMethod = clazz.getMethod("main", String[].class);
-            mainMethod.invoke(null, (Object) new String[0]);
+            ExampleRegistry.invoke(className);
         } catch (ClassNotFoundException e) {
             System.out.println("Error: Class " + className + " not found.");
-        } catch (Exception e) {
+        } catch (Throwable e) {
             System.out.println("Error running example: " + e.getMessage());
         }
         
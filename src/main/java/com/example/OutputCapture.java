@@ -0,0 +1,81 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Per-thread redirection of System.out and System.err.
+ *
+ * While installed, anything a thread prints goes to the buffer assigned with
+ * {@link #captureCurrentThread(ByteArrayOutputStream)}. The buffer is inherited by
+ * threads created from that thread, so output from an example's own worker threads
+ * lands in the same place. Threads without a buffer, including pre-existing shared
+ * pool threads such as the common ForkJoinPool, still write to the real console.
+ */
+final class OutputCapture {
+
+    private static final PrintStream ORIGINAL_OUT = System.out;
+    private static final PrintStream ORIGINAL_ERR = System.err;
+
+    private static final InheritableThreadLocal<ByteArrayOutputStream> BUFFER = new InheritableThreadLocal<>();
+
+    private OutputCapture() {}
+
+    /**
+     * Replaces System.out and System.err with routing streams.
+     */
+    static synchronized void install() {
+        System.setOut(new PrintStream(new Router(ORIGINAL_OUT), true));
+        System.setErr(new PrintStream(new Router(ORIGINAL_ERR), true));
+    }
+
+    /**
+     * Restores the original System.out and System.err.
+     */
+    static synchronized void uninstall() {
+        System.out.flush();
+        System.err.flush();
+        System.setOut(ORIGINAL_OUT);
+        System.setErr(ORIGINAL_ERR);
+    }
+
+    /**
+     * Sends everything printed by the current thread, and threads it starts later, to the given buffer.
+     */
+    static void captureCurrentThread(ByteArrayOutputStream buffer) {
+        BUFFER.set(buffer);
+    }
+
+    /**
+     * Chooses the destination for each write based on the writing thread.
+     */
+    private static final class Router extends OutputStream {
+        private final PrintStream fallback;
+
+        Router(PrintStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private OutputStream target() {
+            ByteArrayOutputStream buffer = BUFFER.get();
+            return buffer != null ? buffer : fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
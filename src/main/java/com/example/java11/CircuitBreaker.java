@@ -0,0 +1,167 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops calls to a failing dependency for a while instead of letting every caller wait for
+ * it to time out.
+ *
+ * The breaker opens after {@code failureThreshold} consecutive failures and then rejects
+ * calls for {@code openDuration}. After that one trial call is let through (half-open): if
+ * it succeeds the breaker closes, if it fails the breaker opens again. Outcomes are reported
+ * with the {@link Permit} the call was admitted with, so a slow call admitted before the
+ * breaker opened cannot decide the trial.
+ *
+ * State lives in an immutable snapshot swapped with compareAndSet, so there are no locks.
+ * While the breaker is closed and calls succeed, {@link #tryAcquire()} and
+ * {@link #onSuccess} only read the snapshot, so healthy traffic never contends on a write.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openDuration     how long the breaker rejects calls before allowing a trial call
+     */
+    public record Config(int failureThreshold, Duration openDuration) {
+
+        /** Opens after 5 consecutive failures, for 10 seconds. */
+        public static Config defaults() {
+            return new Config(5, Duration.ofSeconds(10));
+        }
+
+        public Config withFailureThreshold(int failureThreshold) {
+            return new Config(failureThreshold, openDuration);
+        }
+
+        public Config withOpenDuration(Duration openDuration) {
+            return new Config(failureThreshold, openDuration);
+        }
+    }
+
+    /**
+     * Thrown instead of making a call while the breaker is open.
+     */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String name) {
+            super("Circuit breaker for " + name + " is open");
+        }
+    }
+
+    /**
+     * Admission of one call, handed back with its outcome.
+     */
+    public static final class Permit {
+        // The half-open snapshot this call is the trial for, or null if admitted while closed
+        private final Snapshot trial;
+
+        private Permit(Snapshot trial) {
+            this.trial = trial;
+        }
+    }
+
+    // since: when the breaker opened, or when the current half-open trial started
+    private record Snapshot(State state, int failures, long since) {}
+
+    private static final Snapshot CLOSED = new Snapshot(State.CLOSED, 0, 0);
+    private static final Permit CLOSED_PERMIT = new Permit(null);
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(CLOSED);
+
+    public CircuitBreaker(String name, Config config) {
+        if (config.failureThreshold() < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.name = name;
+        this.failureThreshold = config.failureThreshold();
+        this.openNanos = config.openDuration().toNanos();
+    }
+
+    /**
+     * Returns a permit if a call may be made now, or null. Every permitted call must be
+     * followed by {@link #onSuccess} or {@link #onFailure} with that permit.
+     */
+    public Permit tryAcquire() {
+        Snapshot current = snapshot.get();
+        if (current.state() == State.CLOSED) {
+            return CLOSED_PERMIT;
+        }
+        // Open, or half-open with a trial that has not reported back within openDuration
+        long now = System.nanoTime();
+        if (now - current.since() < openNanos) {
+            return null;
+        }
+        Snapshot trial = new Snapshot(State.HALF_OPEN, current.failures(), now);
+        return snapshot.compareAndSet(current, trial) ? new Permit(trial) : null;
+    }
+
+    /**
+     * Like {@link #tryAcquire()}, but throws when the call is not permitted.
+     */
+    public Permit acquire() throws OpenException {
+        Permit permit = tryAcquire();
+        if (permit == null) {
+            throw new OpenException(name);
+        }
+        return permit;
+    }
+
+    /**
+     * Resets the failure count of a closed breaker, or closes it if this was the current trial.
+     * Calls admitted while closed that finish after the breaker opened are ignored.
+     */
+    public void onSuccess(Permit permit) {
+        Snapshot current = snapshot.get();
+        if (permit.trial == null ? current.state() == State.CLOSED && current != CLOSED : current == permit.trial) {
+            snapshot.compareAndSet(current, CLOSED);
+        }
+    }
+
+    /**
+     * Counts a failure of a closed breaker, or reopens it if this was the current trial.
+     * Calls admitted while closed that finish after the breaker opened are ignored.
+     */
+    public void onFailure(Permit permit) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            Snapshot next;
+            if (permit.trial != null) {
+                if (current != permit.trial) {
+                    return;  // The trial timed out and a later one has taken over
+                }
+                next = new Snapshot(State.OPEN, current.failures() + 1, System.nanoTime());
+            } else if (current.state() == State.CLOSED) {
+                next = current.failures() + 1 >= failureThreshold
+                        ? new Snapshot(State.OPEN, current.failures() + 1, System.nanoTime())
+                        : new Snapshot(State.CLOSED, current.failures() + 1, 0);
+            } else {
+                return;  // Started before the breaker opened
+            }
+            if (snapshot.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    public State state() {
+        return snapshot.get().state();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        Snapshot current = snapshot.get();
+        return "CircuitBreaker[" + name + ", " + current.state() + ", " + current.failures() + " failures]";
+    }
+}
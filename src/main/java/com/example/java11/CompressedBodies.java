@@ -0,0 +1,537 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * gzip and deflate for HttpClient bodies, which the client does not do by itself: it never
+ * sends Accept-Encoding and does not decode Content-Encoding.
+ *
+ * Both directions work chunk by chunk. {@link #compress} compresses each buffer of the source
+ * publisher as the client asks for it, and {@link #decompressing} inflates each received
+ * buffer before passing it on, so neither holds more than a chunk of the body besides what
+ * the compressor keeps internally.
+ *
+ * "deflate" is the zlib format (RFC 1950), as HTTP specifies; when decoding, raw deflate data
+ * without the zlib header, which some servers send, is accepted too.
+ */
+public final class CompressedBodies {
+
+    /** Value for the Accept-Encoding request header. */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    public enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /** The name used in Content-Encoding and Accept-Encoding. */
+        public String token() {
+            return token;
+        }
+    }
+
+    // Size of the buffers handed on in both directions
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private CompressedBodies() {}
+
+    /**
+     * Compresses the source publisher's body with the default compression level. The request
+     * must carry a matching {@code Content-Encoding} header. The length is unknown up front,
+     * so HTTP/1.1 sends the body with chunked transfer encoding.
+     */
+    public static HttpRequest.BodyPublisher compress(HttpRequest.BodyPublisher source, Encoding encoding) {
+        return compress(source, encoding, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Like {@link #compress(HttpRequest.BodyPublisher, Encoding)} with a compression level
+     * from 1 (fastest) to 9 (smallest).
+     */
+    public static HttpRequest.BodyPublisher compress(HttpRequest.BodyPublisher source, Encoding encoding, int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 1 || level > 9)) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                // A new compressor per subscription, since the client re-subscribes to resend
+                source.subscribe(new Compressor(subscriber, encoding, level));
+            }
+        };
+    }
+
+    /**
+     * Wraps a body handler so that gzip and deflate responses are decoded before the handler's
+     * subscriber sees them. Other responses go to the handler unchanged. The handler still
+     * sees the original response headers, including Content-Encoding and Content-Length.
+     */
+    public static <T> HttpResponse.BodyHandler<T> decompressing(HttpResponse.BodyHandler<T> handler) {
+        return info -> decompressing(info.headers().firstValue("Content-Encoding").orElse(null), handler.apply(info));
+    }
+
+    /**
+     * Decodes a body with the given Content-Encoding (null or "identity" for none) for the
+     * downstream subscriber.
+     *
+     * @throws IllegalArgumentException for encodings other than gzip and deflate
+     */
+    public static <T> HttpResponse.BodySubscriber<T> decompressing(String contentEncoding,
+                                                                   HttpResponse.BodySubscriber<T> downstream) {
+        String token = contentEncoding == null ? "identity" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        return switch (token) {
+            case "identity", "" -> downstream;
+            case "gzip", "x-gzip" -> new Decompressor<>(downstream, true);
+            case "deflate" -> new Decompressor<>(downstream, false);
+            default -> throw new IllegalArgumentException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+    }
+
+    /**
+     * Sits between the source publisher and the client. Compressed output does not line up
+     * with the input buffers (the deflater may hold a whole buffer back, or emit several for
+     * one), so output is queued and handed on as the client requests it; the source is asked
+     * for one buffer at a time, and only while the queue is empty and demand is left. The
+     * deflater is only touched in {@link #drain()}, so cancel() cannot end it while another
+     * thread is compressing.
+     */
+    private static final class Compressor implements Flow.Subscriber<ByteBuffer>, Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> downstream;
+        private final boolean gzip;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final Queue<ByteBuffer> input = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drains = new AtomicInteger();
+
+        private Flow.Subscription upstream;
+        private volatile boolean upstreamDone;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        // Only touched in drain()
+        private ByteBuffer out;  // Compressed output not yet queued
+        private boolean awaitingUpstream;
+        private boolean finished;
+        private boolean terminated;
+
+        Compressor(Flow.Subscriber<? super ByteBuffer> downstream, Encoding encoding, int level) {
+            this.downstream = downstream;
+            this.gzip = encoding == Encoding.GZIP;
+            this.deflater = new Deflater(level, gzip);  // gzip wraps raw deflate data itself
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (gzip) {
+                ready.add(ByteBuffer.wrap(GZIP_HEADER.clone()));
+            }
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            input.add(item);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        private void compress(ByteBuffer item) {
+            if (gzip) {
+                crc.update(item.duplicate());
+            }
+            deflater.setInput(item);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        /**
+         * Flushes the deflater and queues the rest of the output, with the gzip trailer.
+         */
+        private void finish() {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (out != null && out.position() > 0) {
+                ready.add(out.flip());
+                out = null;
+            }
+            if (gzip) {
+                ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putInt((int) crc.getValue()).putInt((int) deflater.getBytesRead()).flip();
+                ready.add(trailer);
+            }
+            deflater.end();
+            finished = true;
+        }
+
+        /**
+         * Compresses into the current output buffer and queues it once full, so the client
+         * gets full-size chunks rather than one per source buffer.
+         */
+        private void deflate() {
+            if (out == null) {
+                out = ByteBuffer.allocate(CHUNK_SIZE);
+            }
+            deflater.deflate(out);
+            if (!out.hasRemaining()) {
+                ready.add(out.flip());
+                out = null;
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " items");
+                upstream.cancel();
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+            drain();
+        }
+
+        /**
+         * Compresses the buffers received so far and hands on queued output while there is
+         * demand, then completes or asks the source for more. Runs on one thread at a time;
+         * callers that find it running leave their work to that thread.
+         */
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                if (terminated) {
+                    input.clear();
+                    ready.clear();
+                } else if (cancelled || error != null) {
+                    terminated = true;
+                    input.clear();
+                    ready.clear();
+                    deflater.end();
+                    if (!cancelled) {
+                        downstream.onError(error);
+                    }
+                } else {
+                    // Read before taking the input, so no buffer that arrived before completion is missed
+                    boolean done = upstreamDone;
+                    ByteBuffer item;
+                    while ((item = input.poll()) != null) {
+                        compress(item);
+                        awaitingUpstream = false;
+                    }
+                    if (done && !finished) {
+                        finish();
+                    }
+                    while (demand.get() > 0 && !ready.isEmpty()) {
+                        demand.decrementAndGet();
+                        downstream.onNext(ready.poll());
+                    }
+                    if (ready.isEmpty() && finished) {
+                        terminated = true;
+                        downstream.onComplete();
+                    } else if (ready.isEmpty() && demand.get() > 0 && !awaitingUpstream && !done) {
+                        awaitingUpstream = true;
+                        upstream.request(1);
+                    }
+                }
+            } while (drains.decrementAndGet() != 0);
+        }
+    }
+
+    /**
+     * Inflates each received list of buffers and hands the result on in one call, so demand
+     * passes straight through; when a list inflates to nothing yet, one more list is requested
+     * in its place.
+     */
+    private static final class Decompressor<T> implements HttpResponse.BodySubscriber<T> {
+
+        private enum State { HEADER, BODY, TRAILER, DONE }
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final boolean gzip;
+        private final CRC32 crc = new CRC32();
+        private Inflater inflater;
+        private Flow.Subscription subscription;
+        private State state;
+        private boolean members;  // gzip: whether a complete member has been read
+        private boolean received;  // Whether the body had any bytes at all
+        private long memberBytes;  // gzip: inflated size of the current member
+        private byte[] pending = new byte[16];  // Header or trailer bytes collected so far
+        private int pendingLength;
+        private ByteBuffer out;
+        private boolean failed;
+
+        Decompressor(HttpResponse.BodySubscriber<T> downstream, boolean gzip) {
+            this.downstream = downstream;
+            this.gzip = gzip;
+            this.state = gzip ? State.HEADER : State.BODY;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (failed) {
+                return;
+            }
+            List<ByteBuffer> inflated = new ArrayList<>();
+            try {
+                for (ByteBuffer item : items) {
+                    received |= item.hasRemaining();
+                    decode(item, inflated);
+                }
+                emit(inflated);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            if (inflated.isEmpty()) {
+                subscription.request(1);
+            } else {
+                downstream.onNext(inflated);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            end();
+            if (!failed) {
+                downstream.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            end();
+            // An empty body, e.g. of a 304 or HEAD response, is fine whatever its encoding
+            boolean complete = !received
+                    || (gzip ? state == State.HEADER && pendingLength == 0 && members : state == State.DONE);
+            if (complete) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(new IOException("Truncated " + (gzip ? "gzip" : "deflate") + " body"));
+            }
+        }
+
+        private void decode(ByteBuffer in, List<ByteBuffer> inflated) throws IOException {
+            while (in.hasRemaining()) {
+                switch (state) {
+                    case HEADER -> {
+                        collect(in.get());
+                        int length = gzipHeaderLength();
+                        if (length == pendingLength) {
+                            pendingLength = 0;
+                            crc.reset();
+                            memberBytes = 0;
+                            state = State.BODY;
+                        }
+                    }
+                    case BODY -> inflate(in, inflated);
+                    case TRAILER -> {
+                        collect(in.get());
+                        if (pendingLength == 8) {
+                            checkTrailer();
+                            pendingLength = 0;
+                            members = true;
+                            state = State.HEADER;  // Another member may follow
+                        }
+                    }
+                    case DONE -> throw new IOException("Data after the end of the deflate stream");
+                }
+            }
+        }
+
+        private void inflate(ByteBuffer in, List<ByteBuffer> inflated) throws IOException {
+            if (inflater == null) {
+                // zlib data starts with CM=8 and a window size of at most 32K
+                boolean zlib = !gzip && (in.get(in.position()) & 0x0F) == 8 && (in.get(in.position()) >>> 4 & 0x0F) <= 7;
+                inflater = new Inflater(!zlib);
+            }
+            inflater.setInput(in);
+            try {
+                while (!inflater.finished()) {
+                    if (out == null) {
+                        out = ByteBuffer.allocate(CHUNK_SIZE);
+                    }
+                    int n = inflater.inflate(out);
+                    if (!out.hasRemaining()) {
+                        emit(inflated);
+                    } else if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt " + (gzip ? "gzip" : "deflate") + " body", e);
+            }
+            if (inflater.needsDictionary()) {
+                throw new IOException("Deflate body needs a preset dictionary");
+            }
+            if (inflater.finished()) {
+                emit(inflated);
+                inflater.end();
+                inflater = null;
+                state = gzip ? State.TRAILER : State.DONE;
+            }
+        }
+
+        private void emit(List<ByteBuffer> inflated) {
+            if (out == null || out.position() == 0) {
+                return;
+            }
+            ByteBuffer chunk;
+            if (out.hasRemaining()) {
+                // Partly filled: hand on a copy of the right size and keep filling the buffer
+                chunk = ByteBuffer.wrap(Arrays.copyOf(out.array(), out.position()));
+                out.clear();
+            } else {
+                chunk = out.flip();
+                out = null;
+            }
+            if (gzip) {
+                crc.update(chunk.duplicate());
+                memberBytes += chunk.remaining();
+            }
+            inflated.add(chunk);
+        }
+
+        private void collect(byte b) throws IOException {
+            if (pendingLength == pending.length) {
+                if (pending.length >= 64 * 1024) {
+                    throw new IOException("gzip header too long");
+                }
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            pending[pendingLength++] = b;
+        }
+
+        /**
+         * Length of the gzip member header in {@code pending}, or -1 while it is incomplete.
+         */
+        private int gzipHeaderLength() throws IOException {
+            if (pendingLength >= 2 && (pending[0] != 0x1f || pending[1] != (byte) 0x8b)) {
+                throw new IOException("Not in gzip format");
+            }
+            if (pendingLength < 10) {
+                return -1;
+            }
+            if (pending[2] != Deflater.DEFLATED) {
+                throw new IOException("Unsupported gzip compression method " + pending[2]);
+            }
+            int flags = pending[3];
+            int position = 10;
+            if ((flags & 0x04) != 0) {  // FEXTRA
+                if (pendingLength < position + 2) {
+                    return -1;
+                }
+                position += 2 + ((pending[position] & 0xFF) | (pending[position + 1] & 0xFF) << 8);
+            }
+            if ((flags & 0x08) != 0) {  // FNAME
+                position = skipZeroTerminated(position);
+            }
+            if ((flags & 0x10) != 0 && position >= 0) {  // FCOMMENT
+                position = skipZeroTerminated(position);
+            }
+            if ((flags & 0x02) != 0 && position >= 0) {  // FHCRC
+                position += 2;
+            }
+            return position >= 0 && position <= pendingLength ? position : -1;
+        }
+
+        private int skipZeroTerminated(int position) {
+            for (int i = position; i < pendingLength; i++) {
+                if (pending[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private void checkTrailer() throws IOException {
+            ByteBuffer trailer = ByteBuffer.wrap(pending, 0, 8).order(ByteOrder.LITTLE_ENDIAN);
+            if (trailer.getInt() != (int) crc.getValue()) {
+                throw new IOException("gzip CRC mismatch");
+            }
+            if (trailer.getInt() != (int) memberBytes) {
+                throw new IOException("gzip length mismatch");
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            end();
+            subscription.cancel();
+            downstream.onError(e);
+        }
+
+        private void end() {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,1064 @@
+package com.example.java11;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small cleartext HTTP/2 (h2c) server for an {@link HttpHandler}, so HTTP/2 can be tried
+ * without TLS. com.sun.net.httpserver only speaks HTTP/1.1.
+ *
+ * A connection starts either with an HTTP/1.1 request carrying "Upgrade: h2c", which is how
+ * HttpClient asks for HTTP/2 on http:// URIs, or directly with the HTTP/2 preface. An HTTP/1.1
+ * request without the upgrade is answered over HTTP/1.1 and the connection closed.
+ *
+ * Every stream is handled on its own virtual thread, so a slow response holds up nothing but
+ * itself. Frames from all streams go through one writer thread per connection, which flushes
+ * when it runs out of frames. Flow control is honoured in both directions; server push,
+ * priorities, trailers and TLS are not supported.
+ */
+public final class H2cServer implements AutoCloseable {
+
+    private static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Frame types
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    // Frame flags
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    // Settings
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    // Error codes
+    private static final int PROTOCOL_ERROR = 0x1;
+    private static final int INTERNAL_ERROR = 0x2;
+    private static final int FLOW_CONTROL_ERROR = 0x3;
+    private static final int FRAME_SIZE_ERROR = 0x6;
+    private static final int REFUSED_STREAM = 0x7;
+    private static final int COMPRESSION_ERROR = 0x9;
+
+    private static final int DEFAULT_WINDOW = 65_535;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16_384;
+    private static final int MAX_MAX_FRAME_SIZE = 16_777_215;
+    private static final int HEADER_TABLE_SIZE = 4_096;
+
+    // Hop-by-hop headers of HTTP/1.1 that HTTP/2 does not allow
+    private static final Set<String> CONNECTION_HEADERS =
+            Set.of("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    private static final byte[] CLOSE = new byte[0];
+
+    private final ServerSocket serverSocket;
+    private final int maxConcurrentStreams;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    private final AtomicLong acceptedStreams = new AtomicLong();
+
+    private volatile HttpHandler handler;
+    private volatile boolean closed;
+
+    private H2cServer(ServerSocket serverSocket, int maxConcurrentStreams) {
+        this.serverSocket = serverSocket;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * Binds to the address (port 0 for any free port). Connections are accepted once
+     * {@link #start} is called.
+     *
+     * @param maxConcurrentStreams streams a client may have open on one connection
+     */
+    public static H2cServer create(InetSocketAddress address, int maxConcurrentStreams) throws IOException {
+        if (maxConcurrentStreams < 1) {
+            throw new IllegalArgumentException("maxConcurrentStreams must be at least 1");
+        }
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(address, 1024);
+        return new H2cServer(serverSocket, maxConcurrentStreams);
+    }
+
+    public void start(HttpHandler handler) {
+        this.handler = handler;
+        Thread.ofVirtual().name("h2c-acceptor").start(this::acceptLoop);
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /** Connections accepted so far. */
+    public long connections() {
+        return acceptedConnections.get();
+    }
+
+    /** HTTP/2 streams accepted so far, over all connections. */
+    public long streams() {
+        return acceptedStreams.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        connections.forEach(Connection::abort);
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                acceptedConnections.incrementAndGet();
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread.ofVirtual().name("h2c-reader").start(connection::run);
+            } catch (IOException e) {
+                // The server socket was closed, or one accept failed; the loop condition decides
+            }
+        }
+    }
+
+    private static byte[] frame(int type, int flags, int streamId, byte[] payload, int offset, int length) {
+        byte[] frame = new byte[9 + length];
+        frame[0] = (byte) (length >>> 16);
+        frame[1] = (byte) (length >>> 8);
+        frame[2] = (byte) length;
+        frame[3] = (byte) type;
+        frame[4] = (byte) flags;
+        ByteBuffer.wrap(frame, 5, 4).putInt(streamId);
+        System.arraycopy(payload, offset, frame, 9, length);
+        return frame;
+    }
+
+    private static byte[] frame(int type, int flags, int streamId, byte[] payload) {
+        return frame(type, flags, streamId, payload, 0, payload.length);
+    }
+
+    private record Frame(int type, int flags, int streamId, byte[] payload) {}
+
+    private record RequestHead(String method, String target, Headers headers) {}
+
+    /**
+     * One client connection: a reader thread parsing frames, a writer thread sending them,
+     * and the streams in between.
+     */
+    private final class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final Hpack.Decoder decoder = new Hpack.Decoder(HEADER_TABLE_SIZE);
+        private final BlockingQueue<byte[]> outgoing = new LinkedBlockingQueue<>();
+        private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        // Send windows granted by the client
+        private final ReentrantLock flowLock = new ReentrantLock();
+        private final Condition windowUpdated = flowLock.newCondition();
+        private long connectionWindow = DEFAULT_WINDOW;
+        private int initialStreamWindow = DEFAULT_WINDOW;
+
+        private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        private volatile Thread writer;
+        private int lastStreamId;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        void run() {
+            try {
+                if (openHttp2()) {
+                    readFrames();
+                }
+            } catch (Hpack.CompressionException e) {
+                goAway(COMPRESSION_ERROR);
+            } catch (IOException e) {
+                // The client went away or broke the protocol; either way the connection ends
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Reads the first request. Returns true once the connection has switched to HTTP/2,
+         * false if the request was served over HTTP/1.1 or the client sent nothing.
+         */
+        private boolean openHttp2() throws IOException {
+            RequestHead head = readRequestHead();
+            if (head == null) {
+                return false;
+            }
+            if (head.method().equals("PRI")) {
+                if (!Arrays.equals(in.readNBytes(6), Arrays.copyOfRange(CLIENT_PREFACE, 18, 24))) {
+                    throw new IOException("Invalid HTTP/2 preface");
+                }
+                startHttp2();
+                return true;
+            }
+
+            byte[] body = readHttp1Body(head.headers());
+            String upgrade = head.headers().getFirst("Upgrade");
+            String settings = head.headers().getFirst("HTTP2-Settings");
+            if (upgrade == null || !upgrade.equalsIgnoreCase("h2c") || settings == null) {
+                serveHttp1(head, body);
+                return false;
+            }
+            out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            // The server's SETTINGS go first, so a GOAWAY for bad client settings can follow them
+            startHttp2();
+            applySettings(Base64.getUrlDecoder().decode(settings));
+            if (!Arrays.equals(in.readNBytes(CLIENT_PREFACE.length), CLIENT_PREFACE)) {
+                throw new IOException("Invalid HTTP/2 preface");
+            }
+            // The request that asked for the upgrade is stream 1, already complete
+            lastStreamId = 1;
+            Stream stream = new Stream(1, List.of());
+            streams.put(1, stream);
+            acceptedStreams.incrementAndGet();
+            Thread.ofVirtual().name("h2c-stream").start(() -> serve(stream, head.method(), head.target(), head.headers(), body));
+            return true;
+        }
+
+        private void startHttp2() {
+            writer = Thread.ofVirtual().name("h2c-writer").start(this::writeLoop);
+            byte[] settings = ByteBuffer.allocate(6).putShort((short) SETTINGS_MAX_CONCURRENT_STREAMS)
+                    .putInt(maxConcurrentStreams).array();
+            send(frame(SETTINGS, 0, 0, settings));
+        }
+
+        private void readFrames() throws IOException {
+            while (!closed.get()) {
+                Frame frame = readFrame();
+                switch (frame.type()) {
+                    case HEADERS -> onHeaders(frame);
+                    case DATA -> onData(frame);
+                    case SETTINGS -> {
+                        if ((frame.flags() & FLAG_ACK) == 0) {
+                            applySettings(frame.payload());
+                            send(frame(SETTINGS, FLAG_ACK, 0, new byte[0]));
+                        }
+                    }
+                    case WINDOW_UPDATE -> onWindowUpdate(frame);
+                    case PING -> {
+                        if ((frame.flags() & FLAG_ACK) == 0) {
+                            send(frame(PING, FLAG_ACK, 0, frame.payload()));
+                        }
+                    }
+                    case RST_STREAM -> {
+                        Stream stream = streams.remove(frame.streamId());
+                        if (stream != null) {
+                            stream.reset = true;
+                            signalWindows();
+                        }
+                    }
+                    case GOAWAY -> {
+                        return;
+                    }
+                    case CONTINUATION -> throw protocolError("CONTINUATION without HEADERS");
+                    default -> {
+                        // PRIORITY and unknown frame types are ignored
+                    }
+                }
+            }
+        }
+
+        private Frame readFrame() throws IOException {
+            int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int streamId = in.readInt() & 0x7FFF_FFFF;
+            if (length > DEFAULT_MAX_FRAME_SIZE) {
+                goAway(FRAME_SIZE_ERROR);
+                throw new IOException("Frame of " + length + " bytes exceeds the maximum frame size");
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return new Frame(type, flags, streamId, payload);
+        }
+
+        private void onHeaders(Frame frame) throws IOException {
+            byte[] payload = frame.payload();
+            int offset = 0;
+            int padding = 0;
+            if ((frame.flags() & FLAG_PADDED) != 0) {
+                padding = payload[0] & 0xFF;
+                offset = 1;
+            }
+            if ((frame.flags() & FLAG_PRIORITY) != 0) {
+                offset += 5;
+            }
+            if (offset + padding > payload.length) {
+                throw protocolError("Padding exceeds the HEADERS payload");
+            }
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            block.write(payload, offset, payload.length - offset - padding);
+            int flags = frame.flags();
+            while ((flags & FLAG_END_HEADERS) == 0) {
+                Frame continuation = readFrame();
+                if (continuation.type() != CONTINUATION || continuation.streamId() != frame.streamId()) {
+                    throw protocolError("Expected CONTINUATION for stream " + frame.streamId());
+                }
+                block.writeBytes(continuation.payload());
+                flags = continuation.flags();
+            }
+            // Decoded even for refused streams, to keep the dynamic table in step with the client
+            List<String[]> headers = decoder.decode(block.toByteArray());
+            boolean endStream = (frame.flags() & FLAG_END_STREAM) != 0;
+
+            int id = frame.streamId();
+            Stream existing = streams.get(id);
+            if (existing != null) {
+                if (endStream) {
+                    dispatch(existing);  // Trailers, which are ignored
+                }
+                return;
+            }
+            if (id % 2 == 0 || id <= lastStreamId) {
+                throw protocolError("Invalid stream id " + id);
+            }
+            lastStreamId = id;
+            if (streams.size() >= maxConcurrentStreams) {
+                send(frame(RST_STREAM, 0, id, ByteBuffer.allocate(4).putInt(REFUSED_STREAM).array()));
+                return;
+            }
+            Stream stream = new Stream(id, headers);
+            streams.put(id, stream);
+            acceptedStreams.incrementAndGet();
+            if (endStream) {
+                dispatch(stream);
+            }
+        }
+
+        private void onData(Frame frame) throws IOException {
+            byte[] payload = frame.payload();
+            int offset = 0;
+            int padding = 0;
+            if ((frame.flags() & FLAG_PADDED) != 0) {
+                padding = payload[0] & 0xFF;
+                offset = 1;
+            }
+            if (offset + padding > payload.length) {
+                throw protocolError("Padding exceeds the DATA payload");
+            }
+            boolean endStream = (frame.flags() & FLAG_END_STREAM) != 0;
+            // Give the window back right away; request bodies are buffered in full anyway
+            if (payload.length > 0) {
+                byte[] increment = ByteBuffer.allocate(4).putInt(payload.length).array();
+                send(frame(WINDOW_UPDATE, 0, 0, increment));
+                if (!endStream) {
+                    send(frame(WINDOW_UPDATE, 0, frame.streamId(), increment));
+                }
+            }
+            Stream stream = streams.get(frame.streamId());
+            if (stream == null) {
+                return;  // Reset or refused
+            }
+            stream.requestBody.write(payload, offset, payload.length - offset - padding);
+            if (endStream) {
+                dispatch(stream);
+            }
+        }
+
+        private void onWindowUpdate(Frame frame) {
+            int increment = ByteBuffer.wrap(frame.payload()).getInt() & 0x7FFF_FFFF;
+            flowLock.lock();
+            try {
+                if (frame.streamId() == 0) {
+                    connectionWindow += increment;
+                } else {
+                    Stream stream = streams.get(frame.streamId());
+                    if (stream != null) {
+                        stream.window += increment;
+                    }
+                }
+                windowUpdated.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+
+        /**
+         * Applies the client's settings, ending the connection on values outside the ranges
+         * RFC 9113 section 6.5.2 allows.
+         */
+        private void applySettings(byte[] payload) throws IOException {
+            ByteBuffer settings = ByteBuffer.wrap(payload);
+            while (settings.remaining() >= 6) {
+                int id = settings.getShort() & 0xFFFF;
+                int value = settings.getInt();
+                if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                    if (value < 0) {  // Above 2^31-1 as an unsigned value
+                        goAway(FLOW_CONTROL_ERROR);
+                        throw new IOException("SETTINGS_INITIAL_WINDOW_SIZE of " + Integer.toUnsignedString(value));
+                    }
+                    flowLock.lock();
+                    try {
+                        int delta = value - initialStreamWindow;
+                        initialStreamWindow = value;
+                        streams.values().forEach(stream -> stream.window += delta);
+                        windowUpdated.signalAll();
+                    } finally {
+                        flowLock.unlock();
+                    }
+                } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_MAX_FRAME_SIZE) {
+                        throw protocolError("SETTINGS_MAX_FRAME_SIZE of " + Integer.toUnsignedString(value));
+                    }
+                    peerMaxFrameSize = value;
+                }
+            }
+        }
+
+        private void dispatch(Stream stream) {
+            Thread.ofVirtual().name("h2c-stream").start(() -> serveStream(stream));
+        }
+
+        private void serveStream(Stream stream) {
+            String method = null;
+            String path = null;
+            Headers headers = new Headers();
+            for (String[] header : stream.headers) {
+                switch (header[0]) {
+                    case ":method" -> method = header[1];
+                    case ":path" -> path = header[1];
+                    case ":authority" -> headers.set("Host", header[1]);
+                    case ":scheme" -> { }
+                    default -> headers.add(header[0], header[1]);
+                }
+            }
+            if (method == null || path == null) {
+                reset(stream, PROTOCOL_ERROR);
+                return;
+            }
+            serve(stream, method, path, headers, stream.requestBody.toByteArray());
+        }
+
+        private void serve(Stream stream, String method, String target, Headers headers, byte[] body) {
+            Exchange exchange;
+            try {
+                exchange = new Exchange(method, URI.create(target), headers, body, "HTTP/2.0", socket,
+                        (status, responseHeaders, length) -> respond(stream, status, responseHeaders, length));
+            } catch (IllegalArgumentException e) {
+                reset(stream, PROTOCOL_ERROR);  // Unparseable :path
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                if (exchange.getResponseCode() >= 0) {
+                    reset(stream, INTERNAL_ERROR);  // Too late for an error status
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Sends the response headers and returns the stream for the body, which ends the
+         * HTTP/2 stream when closed. A length of -1 means no body, 0 an unknown length.
+         */
+        private OutputStream respond(Stream stream, int status, Headers headers, long length) {
+            List<String[]> fields = new ArrayList<>();
+            fields.add(new String[] {":status", Integer.toString(status)});
+            headers.forEach((name, values) -> {
+                String lowerCase = name.toLowerCase(Locale.ROOT);
+                if (!CONNECTION_HEADERS.contains(lowerCase)) {
+                    values.forEach(value -> fields.add(new String[] {lowerCase, value}));
+                }
+            });
+            if (length > 0 && !headers.containsKey("Content-Length")) {
+                fields.add(new String[] {"content-length", Long.toString(length)});
+            }
+            boolean endStream = length == -1;
+
+            // HEADERS and its CONTINUATIONs go out as one unit, since nothing may come between them
+            byte[] block = Hpack.encode(fields);
+            int maxFrameSize = peerMaxFrameSize;
+            ByteArrayOutputStream frames = new ByteArrayOutputStream(block.length + 9);
+            int offset = 0;
+            do {
+                int n = Math.min(maxFrameSize, block.length - offset);
+                boolean first = offset == 0;
+                boolean last = offset + n == block.length;
+                int flags = (last ? FLAG_END_HEADERS : 0) | (first && endStream ? FLAG_END_STREAM : 0);
+                frames.writeBytes(frame(first ? HEADERS : CONTINUATION, flags, stream.id, block, offset, n));
+                offset += n;
+            } while (offset < block.length);
+            send(frames.toByteArray());
+
+            if (endStream) {
+                streams.remove(stream.id);
+                return OutputStream.nullOutputStream();
+            }
+            return new DataOutput(stream, maxFrameSize, length);
+        }
+
+        /**
+         * Takes up to {@code wanted} bytes of send window, waiting until some is available.
+         */
+        private int acquireWindow(Stream stream, int wanted) throws IOException {
+            if (wanted == 0) {
+                return 0;
+            }
+            flowLock.lock();
+            try {
+                while (true) {
+                    if (stream.reset || closed.get()) {
+                        throw new IOException("Stream " + stream.id + " was reset");
+                    }
+                    long available = Math.min(connectionWindow, stream.window);
+                    if (available > 0) {
+                        int granted = (int) Math.min(available, wanted);
+                        connectionWindow -= granted;
+                        stream.window -= granted;
+                        return granted;
+                    }
+                    windowUpdated.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the send window");
+            } finally {
+                flowLock.unlock();
+            }
+        }
+
+        private void signalWindows() {
+            flowLock.lock();
+            try {
+                windowUpdated.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+
+        private void reset(Stream stream, int errorCode) {
+            stream.reset = true;
+            streams.remove(stream.id);
+            send(frame(RST_STREAM, 0, stream.id, ByteBuffer.allocate(4).putInt(errorCode).array()));
+            signalWindows();
+        }
+
+        private void goAway(int errorCode) {
+            send(frame(GOAWAY, 0, 0, ByteBuffer.allocate(8).putInt(lastStreamId).putInt(errorCode).array()));
+        }
+
+        private IOException protocolError(String message) {
+            goAway(PROTOCOL_ERROR);
+            return new IOException(message);
+        }
+
+        private void send(byte[] frame) {
+            outgoing.add(frame);
+        }
+
+        /**
+         * Writes queued frames, flushing whenever the queue runs empty, so frames produced
+         * together leave in as few packets as possible.
+         */
+        private void writeLoop() {
+            try {
+                while (true) {
+                    byte[] frame = outgoing.take();
+                    do {
+                        if (frame == CLOSE) {
+                            out.flush();
+                            return;
+                        }
+                        out.write(frame);
+                    } while ((frame = outgoing.poll()) != null);
+                    out.flush();
+                }
+            } catch (InterruptedException | IOException e) {
+                // Connection aborted
+            } finally {
+                abort();
+            }
+        }
+
+        /**
+         * Lets the writer send what is queued, e.g. a GOAWAY, and then close the socket.
+         */
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (writer == null) {
+                abort();  // Still HTTP/1.1, nothing queued
+            } else {
+                outgoing.add(CLOSE);
+                signalWindows();
+            }
+        }
+
+        /**
+         * Closes the socket right away.
+         */
+        void abort() {
+            closed.set(true);
+            connections.remove(this);
+            signalWindows();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            outgoing.add(CLOSE);
+        }
+
+        // HTTP/1.1, for the first request of a connection
+
+        private RequestHead readRequestHead() throws IOException {
+            String requestLine = readLine();
+            if (requestLine == null) {
+                return null;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length != 3) {
+                throw new IOException("Malformed request line: " + requestLine);
+            }
+            Headers headers = new Headers();
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+            if (line == null) {
+                throw new EOFException("Connection closed in the request headers");
+            }
+            return new RequestHead(parts[0], parts[1], headers);
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    int end = line.length();
+                    return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+                }
+                if (line.length() == 8192) {
+                    throw new IOException("Header line too long");
+                }
+                line.append((char) b);
+            }
+            return null;
+        }
+
+        private byte[] readHttp1Body(Headers headers) throws IOException {
+            String contentLength = headers.getFirst("Content-Length");
+            if (contentLength != null) {
+                return in.readNBytes(parseSize(contentLength, 10));
+            }
+            if (!"chunked".equalsIgnoreCase(headers.getFirst("Transfer-Encoding"))) {
+                return new byte[0];
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String sizeLine = readLine();
+                if (sizeLine == null) {
+                    throw new EOFException("Connection closed in a chunked body");
+                }
+                int size = parseSize(sizeLine.split(";")[0].trim(), 16);
+                if (size == 0) {
+                    String trailer;
+                    while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+                        // Trailers are dropped
+                    }
+                    return body.toByteArray();
+                }
+                body.write(in.readNBytes(size));
+                readLine();
+            }
+        }
+
+        /**
+         * A Content-Length or chunk size; malformed ones end the connection like other broken input.
+         */
+        private int parseSize(String value, int radix) throws IOException {
+            try {
+                int size = Integer.parseInt(value.trim(), radix);
+                if (size >= 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IOException("Invalid body size '" + value + "'");
+        }
+
+        private void serveHttp1(RequestHead head, byte[] body) {
+            Exchange exchange;
+            try {
+                exchange = new Exchange(head.method(), URI.create(head.target()), head.headers(), body, "HTTP/1.1",
+                        socket, this::respondHttp1);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                // Nothing more can be sent on this connection
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private OutputStream respondHttp1(int status, Headers headers, long length) throws IOException {
+            StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(" \r\n");
+            headers.forEach((name, values) -> {
+                if (!CONNECTION_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    values.forEach(value -> head.append(name).append(": ").append(value).append("\r\n"));
+                }
+            });
+            if (length > 0) {
+                head.append("Content-Length: ").append(length).append("\r\n");
+            } else if (length == -1 && !headers.containsKey("Content-Length")) {
+                head.append("Content-Length: 0\r\n");
+            }
+            // An unknown length (0) is delimited by closing the connection
+            head.append("Connection: close\r\n\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        /**
+         * Request state of one stream. The window is guarded by the connection's flowLock.
+         */
+        private final class Stream {
+            final int id;
+            final List<String[]> headers;
+            final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+            long window = initialStreamWindow;
+            volatile boolean reset;
+
+            Stream(int id, List<String[]> headers) {
+                this.id = id;
+                this.headers = headers;
+            }
+        }
+
+        /**
+         * A response body, sent as DATA frames of up to the client's maximum frame size as
+         * the flow-control windows allow. A body closed before its declared length resets the
+         * stream, as HttpServer drops the connection in that case.
+         */
+        private final class DataOutput extends OutputStream {
+            private final Stream stream;
+            private final byte[] buffer;
+            private final long declaredLength;
+            private long written;
+            private int count;
+            private boolean done;
+
+            DataOutput(Stream stream, int frameSize, long declaredLength) {
+                this.stream = stream;
+                this.buffer = new byte[frameSize];
+                this.declaredLength = declaredLength;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == buffer.length) {
+                    sendBuffer(false);
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (count == buffer.length) {
+                        sendBuffer(false);
+                    }
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (count > 0) {
+                    sendBuffer(false);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (done || stream.reset) {
+                    return;
+                }
+                done = true;
+                if (declaredLength > 0 && written + count < declaredLength) {
+                    reset(stream, INTERNAL_ERROR);
+                    return;
+                }
+                sendBuffer(true);
+                streams.remove(stream.id);
+            }
+
+            private void sendBuffer(boolean endStream) throws IOException {
+                if (done && !endStream) {
+                    throw new IOException("Stream " + stream.id + " is closed");
+                }
+                int offset = 0;
+                do {
+                    int n = acquireWindow(stream, count - offset);
+                    boolean last = offset + n == count;
+                    send(frame(DATA, endStream && last ? FLAG_END_STREAM : 0, stream.id, buffer, offset, n));
+                    offset += n;
+                } while (offset < count);
+                written += count;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * The HttpExchange the handler sees, for an HTTP/2 stream or a single HTTP/1.1 request.
+     * Response headers are handed to the responder, which returns the stream for the body.
+     */
+    private static final class Exchange extends HttpExchange {
+
+        interface Responder {
+            OutputStream start(int status, Headers headers, long length) throws IOException;
+        }
+
+        private final String method;
+        private final URI uri;
+        private final Headers requestHeaders;
+        private final InputStream requestBody;
+        private final String protocol;
+        private final Socket socket;
+        private final Responder responder;
+        private final Headers responseHeaders = new Headers();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private OutputStream responseBody;
+        private int responseCode = -1;
+
+        // Handed out before the headers are sent; forwards to the real body stream afterwards
+        private final OutputStream responseBodyProxy = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                body().write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (responseBody != null) {
+                    responseBody.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (responseBody != null) {
+                    responseBody.close();
+                }
+            }
+
+            private OutputStream body() throws IOException {
+                if (responseBody == null) {
+                    throw new IOException("sendResponseHeaders has not been called");
+                }
+                return responseBody;
+            }
+        };
+
+        Exchange(String method, URI uri, Headers requestHeaders, byte[] requestBody, String protocol, Socket socket,
+                 Responder responder) {
+            this.method = method;
+            this.uri = uri;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = new ByteArrayInputStream(requestBody);
+            this.protocol = protocol;
+            this.socket = socket;
+            this.responder = responder;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+
+        /** There are no contexts; the server has a single handler. */
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (responseCode < 0) {
+                    sendResponseHeaders(500, -1);
+                }
+                responseBodyProxy.close();
+            } catch (IOException e) {
+                // The connection is gone
+            }
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return requestBody;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return responseBodyProxy;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (responseCode >= 0) {
+                throw new IOException("Response headers have already been sent");
+            }
+            responseCode = rCode;
+            responseBody = responder.start(rCode, responseHeaders, responseLength);
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return (InetSocketAddress) socket.getRemoteSocketAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return (InetSocketAddress) socket.getLocalSocketAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return protocol;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        /** Filters are not supported, so the streams cannot be replaced. */
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            throw new UnsupportedOperationException("Filters are not supported");
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
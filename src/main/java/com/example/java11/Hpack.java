@@ -0,0 +1,281 @@
+package com.example.java11;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * HPACK header compression (RFC 7541), as much as {@link H2cServer} needs: a complete
+ * decoder, including the dynamic table and Huffman-coded strings, and an encoder that writes
+ * every header as a plain literal, which any decoder accepts.
+ */
+final class Hpack {
+
+    /**
+     * Thrown when a header block cannot be decoded; the HTTP/2 connection must then be closed.
+     */
+    static class CompressionException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CompressionException(String message) {
+            super(message);
+        }
+    }
+
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"},
+            {":path", "/index.html"}, {":scheme", "http"}, {":scheme", "https"}, {":status", "200"},
+            {":status", "204"}, {":status", "206"}, {":status", "304"}, {":status", "400"},
+            {":status", "404"}, {":status", "500"}, {"accept-charset", ""}, {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""}, {"access-control-allow-origin", ""},
+            {"age", ""}, {"allow", ""}, {"authorization", ""}, {"cache-control", ""},
+            {"content-disposition", ""}, {"content-encoding", ""}, {"content-language", ""}, {"content-length", ""},
+            {"content-location", ""}, {"content-range", ""}, {"content-type", ""}, {"cookie", ""},
+            {"date", ""}, {"etag", ""}, {"expect", ""}, {"expires", ""},
+            {"from", ""}, {"host", ""}, {"if-match", ""}, {"if-modified-since", ""},
+            {"if-none-match", ""}, {"if-range", ""}, {"if-unmodified-since", ""}, {"last-modified", ""},
+            {"link", ""}, {"location", ""}, {"max-forwards", ""}, {"proxy-authenticate", ""},
+            {"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""},
+            {"retry-after", ""}, {"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""},
+            {"transfer-encoding", ""}, {"user-agent", ""}, {"vary", ""}, {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    // Bit length of the Huffman code of each symbol, 0-255 plus EOS (RFC 7541 Appendix B).
+    // The code is canonical, so the codes themselves follow from the lengths.
+    private static final int[] HUFFMAN_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+            30
+    };
+
+    private static final int EOS = 256;
+    private static final int MAX_CODE_LENGTH = 30;
+
+    // Canonical decoding tables: the codes of each length are consecutive, starting at
+    // FIRST_CODE[length], and belong to the symbols SYMBOLS[FIRST_INDEX[length]...] in order
+    private static final int[] SYMBOLS = new int[HUFFMAN_LENGTHS.length];
+    private static final int[] FIRST_CODE = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] FIRST_INDEX = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] COUNT = new int[MAX_CODE_LENGTH + 1];
+
+    static {
+        int index = 0;
+        int code = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            FIRST_CODE[length] = code;
+            FIRST_INDEX[length] = index;
+            for (int symbol = 0; symbol < HUFFMAN_LENGTHS.length; symbol++) {
+                if (HUFFMAN_LENGTHS[symbol] == length) {
+                    SYMBOLS[index++] = symbol;
+                    COUNT[length]++;
+                }
+            }
+            code = (code + COUNT[length]) << 1;
+        }
+    }
+
+    private Hpack() {}
+
+    /**
+     * Encodes headers, given as name/value pairs with lower-case names, as literals that are
+     * not added to the peer's dynamic table.
+     */
+    static byte[] encode(List<String[]> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String[] header : headers) {
+            out.write(0x00);  // Literal without indexing, new name
+            writeString(out, header[0]);
+            writeString(out, header[1]);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        writeInteger(out, 0x00, 7, bytes.length);  // High bit clear: not Huffman-coded
+        out.writeBytes(bytes);
+    }
+
+    private static void writeInteger(ByteArrayOutputStream out, int firstByteBits, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(firstByteBits | value);
+            return;
+        }
+        out.write(firstByteBits | max);
+        value -= max;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Decodes the header blocks of one connection, in order; the dynamic table carries over
+     * from one block to the next.
+     */
+    static final class Decoder {
+
+        private final int maxTableSize;
+        private final Deque<String[]> dynamicTable = new ArrayDeque<>();  // Newest first
+        private int tableSize;
+        private int tableCapacity;
+
+        /**
+         * @param maxTableSize the SETTINGS_HEADER_TABLE_SIZE advertised to the peer
+         */
+        Decoder(int maxTableSize) {
+            this.maxTableSize = maxTableSize;
+            this.tableCapacity = maxTableSize;
+        }
+
+        /**
+         * Returns the headers of a complete block as name/value pairs, in order.
+         */
+        List<String[]> decode(byte[] block) throws CompressionException {
+            ByteBuffer in = ByteBuffer.wrap(block);
+            List<String[]> headers = new ArrayList<>();
+            try {
+                while (in.hasRemaining()) {
+                    int first = in.get(in.position()) & 0xFF;
+                    if ((first & 0x80) != 0) {
+                        headers.add(entry(readInteger(in, 7)));  // Indexed
+                    } else if ((first & 0x40) != 0) {
+                        String[] header = readLiteral(in, 6);  // Literal with incremental indexing
+                        headers.add(header);
+                        add(header);
+                    } else if ((first & 0x20) != 0) {
+                        int capacity = readInteger(in, 5);  // Dynamic table size update
+                        if (capacity > maxTableSize) {
+                            throw new CompressionException("Table size " + capacity + " exceeds " + maxTableSize);
+                        }
+                        tableCapacity = capacity;
+                        evict();
+                    } else {
+                        headers.add(readLiteral(in, 4));  // Without indexing or never indexed
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new CompressionException("Truncated header block");
+            }
+            return headers;
+        }
+
+        private String[] readLiteral(ByteBuffer in, int prefixBits) throws CompressionException {
+            int index = readInteger(in, prefixBits);
+            String name = index == 0 ? readString(in) : entry(index)[0];
+            return new String[] {name, readString(in)};
+        }
+
+        private String[] entry(int index) throws CompressionException {
+            if (index >= 1 && index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            int dynamicIndex = index - STATIC_TABLE.length - 1;
+            if (dynamicIndex < 0 || dynamicIndex >= dynamicTable.size()) {
+                throw new CompressionException("Invalid table index " + index);
+            }
+            var entries = dynamicTable.iterator();
+            for (int i = 0; i < dynamicIndex; i++) {
+                entries.next();
+            }
+            return entries.next();
+        }
+
+        private void add(String[] header) {
+            dynamicTable.addFirst(header);
+            tableSize += entrySize(header);
+            evict();
+        }
+
+        private void evict() {
+            while (tableSize > tableCapacity) {
+                tableSize -= entrySize(dynamicTable.removeLast());
+            }
+        }
+
+        private static int entrySize(String[] header) {
+            return header[0].length() + header[1].length() + 32;
+        }
+
+        private static int readInteger(ByteBuffer in, int prefixBits) throws CompressionException {
+            int max = (1 << prefixBits) - 1;
+            int value = in.get() & max;
+            if (value < max) {
+                return value;
+            }
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 21) {
+                    throw new CompressionException("Integer too large");
+                }
+                int b = in.get() & 0xFF;
+                value += (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        private static String readString(ByteBuffer in) throws CompressionException {
+            boolean huffman = (in.get(in.position()) & 0x80) != 0;
+            int length = readInteger(in, 7);
+            if (length > in.remaining()) {
+                throw new CompressionException("String longer than the header block");
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return huffman ? huffmanDecode(bytes) : new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        private static String huffmanDecode(byte[] encoded) throws CompressionException {
+            StringBuilder text = new StringBuilder(encoded.length * 8 / 5);
+            int code = 0;
+            int length = 0;
+            for (byte b : encoded) {
+                for (int bit = 7; bit >= 0; bit--) {
+                    code = (code << 1) | ((b >>> bit) & 1);
+                    length++;
+                    int offset = code - FIRST_CODE[length];
+                    if (offset >= 0 && offset < COUNT[length]) {
+                        int symbol = SYMBOLS[FIRST_INDEX[length] + offset];
+                        if (symbol == EOS) {
+                            throw new CompressionException("EOS in Huffman-coded string");
+                        }
+                        text.append((char) symbol);
+                        code = 0;
+                        length = 0;
+                    } else if (length == MAX_CODE_LENGTH) {
+                        throw new CompressionException("Invalid Huffman code");
+                    }
+                }
+            }
+            // The last byte is padded with the most significant bits of EOS, i.e. ones
+            if (length > 7 || code != (1 << length) - 1) {
+                throw new CompressionException("Invalid Huffman padding");
+            }
+            return text.toString();
+        }
+    }
+}
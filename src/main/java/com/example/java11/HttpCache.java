@@ -0,0 +1,435 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * A private (single-user) response cache in front of an HttpClient, for GET requests.
+ *
+ * A 200 response is stored when its Cache-Control allows it and it has a max-age or a
+ * validator (ETag or Last-Modified). While fresh it is answered from the cache; once stale
+ * it is revalidated with If-None-Match / If-Modified-Since, and a 304 refreshes the stored
+ * entry instead of downloading the body again. Concurrent requests for a URI that is not
+ * fresh share a single upstream request.
+ *
+ * Bodies are kept in an LRU bounded by their total size. With a spill directory, entries
+ * evicted from memory move to disk (also LRU and size-bounded) and return to memory when
+ * they are used again. Entries are keyed by URI alone, so responses carrying Vary are not
+ * stored. Other methods go straight to the client; unsafe ones invalidate the URI.
+ */
+public final class HttpCache {
+
+    /**
+     * Request counts since the cache was created.
+     *
+     * @param hits          answered from a fresh entry without contacting the server
+     * @param misses        sent upstream without a usable entry
+     * @param revalidations conditional requests sent for stale entries
+     * @param notModified   revalidations the server answered with 304
+     * @param coalesced     requests that waited for an upstream request already in flight
+     */
+    public record Stats(long hits, long misses, long revalidations, long notModified, long coalesced) {
+        public double hitRatio() {
+            long total = hits + misses + revalidations + coalesced;
+            return total == 0 ? 0.0 : (double) (hits + notModified) / total;
+        }
+    }
+
+    /**
+     * A stored response. The body is either in memory or in a spill file, never both.
+     */
+    private record Entry(int statusCode, HttpHeaders headers, HttpClient.Version version, byte[] body, Path file,
+                         long size, long storedAt, long freshNanos)
+            implements HttpResponse.ResponseInfo {
+
+        boolean isFresh() {
+            return System.nanoTime() - storedAt < freshNanos;
+        }
+
+        boolean hasValidator() {
+            return headers.firstValue("ETag").isPresent() || headers.firstValue("Last-Modified").isPresent();
+        }
+
+        Entry inMemory(byte[] body) {
+            return new Entry(statusCode, headers, version, body, null, size, storedAt, freshNanos);
+        }
+
+        Entry onDisk(Path file) {
+            return new Entry(statusCode, headers, version, null, file, size, storedAt, freshNanos);
+        }
+    }
+
+    private final HttpClient client;
+    private final long maxMemoryBytes;
+    private final Path spillDirectory;
+    private final long maxDiskBytes;
+
+    // Both in access order, so the first entry is the least recently used; guarded by "this"
+    private final LinkedHashMap<URI, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<URI, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Map<URI, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Creates a memory-only cache holding up to {@code maxMemoryBytes} of response bodies.
+     */
+    public HttpCache(HttpClient client, long maxMemoryBytes) {
+        this(client, maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * Creates a cache that moves bodies evicted from memory to files in the spill directory,
+     * up to {@code maxDiskBytes} in total.
+     */
+    public HttpCache(HttpClient client, long maxMemoryBytes, Path spillDirectory, long maxDiskBytes) {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("Cache sizes must not be negative");
+        }
+        this.client = client;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillDirectory = spillDirectory;
+        this.maxDiskBytes = spillDirectory == null ? 0 : maxDiskBytes;
+    }
+
+    /**
+     * Like {@link HttpClient#send}, answering from the cache where possible.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        try {
+            return sendAsync(request, handler).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Like {@link HttpClient#sendAsync}, answering from the cache where possible. Cached
+     * bodies are replayed through the handler, so any handler works with cached responses.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        URI uri = request.uri();
+        if (!request.method().equals("GET") || hasDirective(request.headers(), "no-store")) {
+            if (!request.method().equals("GET") && !request.method().equals("HEAD")) {
+                invalidate(uri);
+            }
+            return client.sendAsync(request, handler);
+        }
+
+        Entry entry = lookup(uri);
+        if (entry != null && entry.isFresh() && !hasDirective(request.headers(), "no-cache")) {
+            hits.increment();
+            return replay(request, entry, handler);
+        }
+        return fetch(request, entry).thenCompose(fetched -> replay(request, fetched, handler));
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), revalidations.sum(), notModified.sum(), coalesced.sum());
+    }
+
+    /**
+     * Removes the entry for a URI, e.g. after changing the resource.
+     */
+    public void invalidate(URI uri) {
+        Entry removed;
+        synchronized (this) {
+            removed = remove(uri);
+        }
+        deleteSpillFile(removed);
+    }
+
+    /**
+     * Sends the request upstream, conditionally if there is a stale entry with a validator,
+     * unless a request for the same URI is already in flight; then its result is shared.
+     */
+    private CompletableFuture<Entry> fetch(HttpRequest request, Entry stale) {
+        URI uri = request.uri();
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(uri, mine);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        boolean conditional = stale != null && stale.hasValidator();
+        HttpRequest upstream = request;
+        if (conditional) {
+            revalidations.increment();
+            HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+            stale.headers().firstValue("ETag").ifPresent(etag -> builder.setHeader("If-None-Match", etag));
+            stale.headers().firstValue("Last-Modified").ifPresent(date -> builder.setHeader("If-Modified-Since", date));
+            upstream = builder.build();
+        } else {
+            misses.increment();
+        }
+
+        client.sendAsync(upstream, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+            inFlight.remove(uri, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+                return;
+            }
+            try {
+                mine.complete(conditional && response.statusCode() == 304 ? refresh(uri, stale, response) : store(uri, response));
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Applies a 304 to a stale entry: its headers are updated and its freshness starts over.
+     */
+    private Entry refresh(URI uri, Entry stale, HttpResponse<byte[]> response) {
+        notModified.increment();
+        Map<String, List<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        merged.putAll(stale.headers().map());
+        response.headers().map().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("Content-Length")) {
+                merged.put(name, values);
+            }
+        });
+        HttpHeaders headers = HttpHeaders.of(merged, (name, value) -> true);
+        Entry refreshed = new Entry(stale.statusCode(), headers, stale.version(), stale.body(), stale.file(),
+                stale.size(), System.nanoTime(), freshness(headers));
+        put(uri, refreshed);
+        return refreshed;
+    }
+
+    /**
+     * Wraps a full response as an entry and stores it if it may be cached.
+     */
+    private Entry store(URI uri, HttpResponse<byte[]> response) {
+        HttpHeaders headers = response.headers();
+        byte[] body = response.body();
+        Entry entry = new Entry(response.statusCode(), headers, response.version(), body, null, body.length,
+                System.nanoTime(), freshness(headers));
+        boolean cacheable = response.statusCode() == 200
+                && !hasDirective(headers, "no-store")
+                && headers.firstValue("Vary").isEmpty()
+                && (entry.freshNanos() > 0 || entry.hasValidator())
+                && body.length <= maxMemoryBytes;
+        if (cacheable) {
+            put(uri, entry);
+        } else {
+            invalidate(uri);
+        }
+        return entry;
+    }
+
+    /**
+     * How long a response stays fresh: its max-age less its Age, or zero for no-cache.
+     */
+    private static long freshness(HttpHeaders headers) {
+        if (hasDirective(headers, "no-cache")) {
+            return 0;
+        }
+        OptionalLong maxAge = directiveValue(headers, "max-age");
+        if (maxAge.isEmpty()) {
+            return 0;
+        }
+        long age = headers.firstValueAsLong("Age").orElse(0);
+        return Duration.ofSeconds(Math.max(0, maxAge.getAsLong() - age)).toNanos();
+    }
+
+    private static boolean hasDirective(HttpHeaders headers, String directive) {
+        return headers.allValues("Cache-Control").stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .anyMatch(part -> part.trim().equalsIgnoreCase(directive));
+    }
+
+    private static OptionalLong directiveValue(HttpHeaders headers, String directive) {
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String part : value.split(",")) {
+                String[] nameValue = part.trim().split("=", 2);
+                if (nameValue.length == 2 && nameValue[0].equalsIgnoreCase(directive)) {
+                    try {
+                        return OptionalLong.of(Long.parseLong(nameValue[1].replace("\"", "")));
+                    } catch (NumberFormatException e) {
+                        return OptionalLong.empty();
+                    }
+                }
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Feeds the cached body to a new subscriber from the caller's handler.
+     */
+    private static <T> CompletableFuture<HttpResponse<T>> replay(HttpRequest request, Entry entry,
+                                                                 HttpResponse.BodyHandler<T> handler) {
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(entry);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            private boolean done;
+
+            @Override
+            public void request(long n) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                if (entry.body().length > 0) {
+                    subscriber.onNext(List.of(ByteBuffer.wrap(entry.body()).asReadOnlyBuffer()));
+                }
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                done = true;
+            }
+        });
+        return subscriber.getBody().toCompletableFuture()
+                .thenApply(body -> new CachedResponse<>(entry.statusCode(), request, entry.headers(), body,
+                        entry.version()));
+    }
+
+    private record CachedResponse<T>(int statusCode, HttpRequest request, HttpHeaders headers, T body,
+                                     HttpClient.Version version) implements HttpResponse<T> {
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+    }
+
+    // Storage. Spill files are written and read while holding the lock, which keeps the two
+    // LRU maps and their byte counts consistent at the cost of blocking other lookups meanwhile.
+
+    /**
+     * The entry for a URI with its body in memory, moving it back from disk if needed.
+     */
+    private synchronized Entry lookup(URI uri) {
+        Entry entry = memory.get(uri);
+        if (entry != null) {
+            return entry;
+        }
+        entry = disk.remove(uri);
+        if (entry == null) {
+            return null;
+        }
+        diskBytes -= entry.size();
+        try {
+            byte[] body = Files.readAllBytes(entry.file());
+            Files.deleteIfExists(entry.file());
+            entry = entry.inMemory(body);
+            putInMemory(uri, entry);
+            return entry;
+        } catch (IOException e) {
+            return null;  // A lost spill file is just a miss
+        }
+    }
+
+    /**
+     * Stores an entry whose body is in memory, replacing any previous one.
+     */
+    private synchronized void put(URI uri, Entry entry) {
+        deleteSpillFile(remove(uri));
+        putInMemory(uri, entry);
+    }
+
+    private void putInMemory(URI uri, Entry entry) {
+        memory.put(uri, entry);
+        memoryBytes += entry.size();
+        var eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            Map.Entry<URI, Entry> evicted = eldest.next();
+            eldest.remove();
+            memoryBytes -= evicted.getValue().size();
+            spill(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    private void spill(URI uri, Entry entry) {
+        if (spillDirectory == null || entry.size() > maxDiskBytes) {
+            return;
+        }
+        try {
+            Files.createDirectories(spillDirectory);
+            Path file = spillDirectory.resolve(UUID.randomUUID() + ".body");
+            Files.write(file, entry.body());
+            disk.put(uri, entry.onDisk(file));
+            diskBytes += entry.size();
+        } catch (IOException e) {
+            return;  // Dropped instead of spilled
+        }
+        var eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            diskBytes -= evicted.size();
+            deleteSpillFile(evicted);
+        }
+    }
+
+    private Entry remove(URI uri) {
+        Entry entry = memory.remove(uri);
+        if (entry != null) {
+            memoryBytes -= entry.size();
+            return entry;
+        }
+        entry = disk.remove(uri);
+        if (entry != null) {
+            diskBytes -= entry.size();
+        }
+        return entry;
+    }
+
+    private static void deleteSpillFile(Entry entry) {
+        if (entry == null || entry.file() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.file());
+        } catch (IOException e) {
+            // Left behind in the spill directory; it is never read again
+        }
+    }
+}
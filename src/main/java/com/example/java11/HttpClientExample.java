@@ -5,24 +5,63 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Demonstrates the standardized HTTP Client API introduced in Java 11.
  * 
  * This API supports both synchronous and asynchronous programming models,
  * HTTP/2, WebSockets, and replaces the older HttpURLConnection.
+ *
+ * By default the examples call httpbin.org and nghttp2.org. Set the system property
+ * {@code examples.httpbin} to {@code local} to run them against an embedded
+ * {@link LocalHttpBinServer} instead, or to the base URL of another httpbin deployment.
  */
 public class HttpClientExample {
 
+    // Base URLs of the httpbin-compatible services the examples call
+    private static String httpbin = "https://httpbin.org";
+    private static String http2bin = "https://nghttp2.org/httpbin";
+    private static boolean local;
+
     public static void main(String[] args) {
+        String target = System.getProperty("examples.httpbin", "");
+        if (target.equals("local")) {
+            try (LocalHttpBinServer server = LocalHttpBinServer.start(0, LocalHttpBinServer.Settings.defaults());
+                 LocalHttpBinServer h2cServer = LocalHttpBinServer.startH2c(0, LocalHttpBinServer.Settings.defaults(), 100)) {
+                httpbin = server.baseUri().toString();
+                http2bin = h2cServer.uri("/httpbin").toString();
+                local = true;
+                System.out.println("Using embedded server at " + httpbin + "\n");
+                runExamples();
+            } catch (IOException e) {
+                System.err.println("Could not start the embedded server: " + e.getMessage());
+            }
+        } else {
+            if (!target.isEmpty()) {
+                httpbin = target;
+                http2bin = target;
+            }
+            runExamples();
+        }
+    }
+
+    private static void runExamples() {
         try {
             // Basic GET request
             synchronousGet();
@@ -36,6 +75,9 @@ public class HttpClientExample {
             // Multiple asynchronous requests
             multipleAsyncRequests();
             
+            // Thousands of requests with bounded concurrency
+            boundedFanOut();
+            
             // Configure timeout, version, etc.
             configuredClient();
             
@@ -45,6 +87,24 @@ public class HttpClientExample {
             // Download file example
             downloadFile();
             
+            // Process bodies while they arrive
+            streamingBodies();
+            
+            // Large file in parallel byte ranges
+            rangedDownload();
+            
+            // Answer repeated GETs from a local cache
+            responseCache();
+            
+            // Retries, deadlines and a circuit breaker
+            resilientClient();
+            
+            // gzip and deflate in both directions
+            compressedBodies();
+            
+            // Many small records as few rate-limited POSTs
+            batchedUploads();
+            
         } catch (Exception e) {
             System.err.println("Error in HTTP Client example: " + e.getMessage());
             e.printStackTrace();
@@ -58,12 +118,12 @@ public class HttpClientExample {
         System.out.println("1. Basic Synchronous GET Request");
         System.out.println("-------------------------------");
         
-        // Create a client
-        HttpClient client = HttpClient.newHttpClient();
+        // Reuse the shared client: creating one per request opens a new connection every time
+        HttpClient client = HttpClients.shared();
         
         // Create a request
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://httpbin.org/get"))
+                .uri(URI.create(httpbin + "/get"))
                 .GET() // GET is default, so this line is optional
                 .build();
         
@@ -84,10 +144,10 @@ public class HttpClientExample {
         System.out.println("2. Asynchronous GET Request");
         System.out.println("--------------------------");
         
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClients.shared();
         
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://httpbin.org/get?param=async"))
+                .uri(URI.create(httpbin + "/get?param=async"))
                 .header("Accept", "application/json")
                 .build();
         
@@ -114,12 +174,12 @@ public class HttpClientExample {
         System.out.println("3. POST Request with JSON Body");
         System.out.println("----------------------------");
         
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClients.shared();
         
         String jsonBody = "{\"name\":\"John\", \"age\":30}";
         
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://httpbin.org/post"))
+                .uri(URI.create(httpbin + "/post"))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                 .build();
@@ -138,13 +198,13 @@ public class HttpClientExample {
         System.out.println("4. Multiple Asynchronous Requests");
         System.out.println("--------------------------------");
         
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClients.shared();
         
         // Create a list of URIs to fetch
         List<URI> uris = List.of(
-                URI.create("https://httpbin.org/get?param=1"),
-                URI.create("https://httpbin.org/get?param=2"),
-                URI.create("https://httpbin.org/get?param=3")
+                URI.create(httpbin + "/get?param=1"),
+                URI.create(httpbin + "/get?param=2"),
+                URI.create(httpbin + "/get?param=3")
         );
         
         // Create a list of requests
@@ -175,6 +235,57 @@ public class HttpClientExample {
         System.out.println();
     }
     
+    /**
+     * Fan-out to many URIs with in-flight limits, consuming results as a Flow
+     */
+    private static void boundedFanOut() throws InterruptedException {
+        System.out.println("4b. Bounded Fan-Out");
+        System.out.println("------------------");
+        
+        // Keep the load on public services small; the embedded server can take far more
+        int count = local ? 5_000 : 20;
+        Stream<URI> uris = IntStream.range(0, count).mapToObj(i -> URI.create(httpbin + "/get?param=" + i));
+        
+        // At most 64 requests in flight, and 16 to any single host
+        HttpFanOut fanOut = new HttpFanOut(HttpClients.shared(), 64, 16);
+        Flow.Publisher<HttpFanOut.Result<String>> results = fanOut.fetch(uris, HttpResponse.BodyHandlers.ofString());
+        
+        CountDownLatch done = new CountDownLatch(1);
+        Map<Integer, Integer> statusCounts = new TreeMap<>();
+        results.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(32);
+            }
+            
+            @Override
+            public void onNext(HttpFanOut.Result<String> result) {
+                statusCounts.merge(result.isSuccess() ? result.response().statusCode() : -1, 1, Integer::sum);
+                subscription.request(1);
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                System.out.println("Fan-out cancelled after a fatal error: " + error);
+                done.countDown();
+            }
+            
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        done.await();
+        
+        System.out.println("Requests: " + count + ", responses by status: " + statusCounts);
+        fanOut.hostLatencies().forEach((host, latency) ->
+                System.out.println("Latency for " + host + ": " + latency.summary()));
+        System.out.println();
+    }
+    
     /**
      * HTTP client with custom configuration
      */
@@ -182,24 +293,27 @@ public class HttpClientExample {
         System.out.println("5. Configured HTTP Client");
         System.out.println("------------------------");
         
-        // Create a client with custom configuration
-        HttpClient client = HttpClient.newBuilder()
+        // Create a client with custom configuration. A client built for a single call
+        // should be closed (HttpClient is AutoCloseable since Java 21); long-lived code
+        // would build it once, e.g. with HttpClients.create(config)
+        try (HttpClient client = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2) // Prefer HTTP/2
                 .followRedirects(HttpClient.Redirect.NORMAL) // Follow redirects
                 .connectTimeout(Duration.ofSeconds(10)) // Connection timeout
-                .build();
-        
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://httpbin.org/get"))
-                .timeout(Duration.ofSeconds(30)) // Request timeout
-                .header("User-Agent", "Java 11 HttpClient Demo")
-                .build();
-        
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        System.out.println("Protocol version: " + response.version());
-        System.out.println("Status code: " + response.statusCode());
-        System.out.println("Response body: " + response.body());
+                .build()) {
+            
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(httpbin + "/get"))
+                    .timeout(Duration.ofSeconds(30)) // Request timeout
+                    .header("User-Agent", "Java 11 HttpClient Demo")
+                    .build();
+            
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            
+            System.out.println("Protocol version: " + response.version());
+            System.out.println("Status code: " + response.statusCode());
+            System.out.println("Response body: " + response.body());
+        }
         System.out.println();
     }
     
@@ -210,12 +324,11 @@ public class HttpClientExample {
         System.out.println("6. HTTP/2 Features");
         System.out.println("------------------");
         
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2) // Use HTTP/2
-                .build();
+        // The shared client prefers HTTP/2 and falls back to HTTP/1.1 if the server lacks it
+        HttpClient client = HttpClients.shared();
         
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://nghttp2.org/httpbin/get")) // This server supports HTTP/2
+                .uri(URI.create(http2bin + "/get")) // This server supports HTTP/2
                 .build();
         
         HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
@@ -233,10 +346,10 @@ public class HttpClientExample {
         System.out.println("7. Download File Example");
         System.out.println("-----------------------");
         
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClients.shared();
         
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://httpbin.org/image/jpeg")) // Sample image URL
+                .uri(URI.create(httpbin + "/image/jpeg")) // Sample image URL
                 .build();
         
         // Prepare the output file path (this example uses a temp file)
@@ -251,4 +364,210 @@ public class HttpClientExample {
         System.out.println("Status code: " + response.statusCode());
         System.out.println();
     }
+    
+    /**
+     * Body handlers that process the response incrementally instead of buffering it
+     */
+    private static void streamingBodies() throws IOException, InterruptedException {
+        System.out.println("8. Streaming Body Handlers");
+        System.out.println("-------------------------");
+        
+        HttpClient client = HttpClients.shared();
+        
+        // Parse 100 newline-delimited JSON objects as they arrive, keeping only a count
+        class ObjectCounter implements JsonStreamParser.Listener {
+            int depth;
+            int objects;
+            
+            @Override
+            public void startObject() {
+                if (depth++ == 0) {
+                    objects++;
+                }
+            }
+            
+            @Override
+            public void endObject() {
+                depth--;
+            }
+        }
+        HttpRequest streamRequest = HttpRequest.newBuilder(URI.create(httpbin + "/stream/100")).build();
+        ObjectCounter counter = client.send(streamRequest, StreamingBodyHandlers.ofJson(ObjectCounter::new)).body();
+        System.out.println("Top-level JSON objects streamed: " + counter.objects);
+        
+        // Hash the image without holding it in memory
+        HttpRequest imageRequest = HttpRequest.newBuilder(URI.create(httpbin + "/image/jpeg")).build();
+        StreamingBodyHandlers.Digest digest =
+                client.send(imageRequest, StreamingBodyHandlers.ofDigest("SHA-256")).body();
+        System.out.println("Image: " + digest.bytes() + " bytes, SHA-256 " + digest.hex());
+        
+        // Forward the buffers straight into a file channel
+        Path outputPath = Files.createTempFile("streamed-", ".jpg");
+        try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.WRITE)) {
+            long written = client.send(imageRequest, StreamingBodyHandlers.ofFileChannel(channel, 0)).body();
+            System.out.println("Written to " + outputPath + ": " + written + " bytes");
+        } finally {
+            Files.deleteIfExists(outputPath);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Download one file as parallel byte ranges, resumable after an interruption
+     */
+    private static void rangedDownload() throws IOException, InterruptedException {
+        System.out.println("9. Parallel Ranged Download");
+        System.out.println("--------------------------");
+        
+        // httpbin.org serves at most 100KB from /range; the embedded server has no such limit
+        int size = local ? 50 * 1024 * 1024 : 100 * 1024;
+        long segmentBytes = local ? 4 * 1024 * 1024 : 16 * 1024;
+        URI uri = URI.create(httpbin + "/range/" + size);
+        
+        // Four segments in flight, three attempts per segment
+        RangedDownloader downloader = new RangedDownloader(HttpClients.shared(), 4, segmentBytes, 3);
+        Path target = Files.createTempFile("ranged-", ".bin");
+        try {
+            long start = System.nanoTime();
+            RangedDownloader.Result result = downloader.download(uri, target);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Downloaded " + result.bytes() + " bytes in " + result.segments()
+                    + " segments (" + millis + " ms, " + result.retries() + " retries)");
+            System.out.println("SHA-256: " + result.sha256());
+        } finally {
+            Files.deleteIfExists(target);
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Client-side cache honouring max-age, with revalidation and request coalescing
+     */
+    private static void responseCache() throws IOException, InterruptedException {
+        System.out.println("10. Response Cache");
+        System.out.println("-----------------");
+        
+        HttpCache cache = new HttpCache(HttpClients.shared(), 1024 * 1024);
+        
+        // Fresh for 60 seconds, so only the first of these reaches the server
+        HttpRequest fresh = HttpRequest.newBuilder(URI.create(httpbin + "/cache/60")).build();
+        for (int i = 0; i < 5; i++) {
+            cache.send(fresh, HttpResponse.BodyHandlers.ofString());
+        }
+        
+        // Validators but no max-age: later requests are revalidated and answered with 304
+        HttpRequest validated = HttpRequest.newBuilder(URI.create(httpbin + "/cache")).build();
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = cache.send(validated, HttpResponse.BodyHandlers.ofString());
+            System.out.println("GET /cache -> " + response.statusCode() + ", " + response.body().length() + " chars");
+        }
+        
+        // Ten concurrent requests for an uncached (slow) URI share one upstream request
+        HttpRequest slow = HttpRequest.newBuilder(URI.create(httpbin + "/cache/60?delay_ms=200")).build();
+        List<CompletableFuture<HttpResponse<String>>> concurrent = IntStream.range(0, 10)
+                .mapToObj(i -> cache.sendAsync(slow, HttpResponse.BodyHandlers.ofString()))
+                .toList();
+        CompletableFuture.allOf(concurrent.toArray(CompletableFuture[]::new)).join();
+        
+        HttpCache.Stats stats = cache.stats();
+        System.out.println("Hits: " + stats.hits() + ", misses: " + stats.misses()
+                + ", revalidations: " + stats.revalidations() + " (" + stats.notModified() + " not modified)"
+                + ", coalesced: " + stats.coalesced());
+        System.out.println();
+    }
+    
+    /**
+     * Retries with backoff inside a deadline, and a circuit breaker for a failing host
+     */
+    private static void resilientClient() throws IOException, InterruptedException {
+        System.out.println("11. Retries and Circuit Breaker");
+        System.out.println("------------------------------");
+        
+        // Up to 4 attempts 50-400ms apart; the breaker opens after 5 consecutive failures
+        ResilientHttpClient client = new ResilientHttpClient(HttpClients.shared(),
+                ResilientHttpClient.RetryPolicy.defaults().withBackoff(Duration.ofMillis(50), Duration.ofMillis(400)),
+                CircuitBreaker.Config.defaults());
+        
+        HttpRequest healthy = HttpRequest.newBuilder(URI.create(httpbin + "/get")).build();
+        HttpResponse<String> response = client.send(healthy, HttpResponse.BodyHandlers.ofString(), Duration.ofSeconds(5));
+        System.out.println("GET /get -> " + response.statusCode());
+        
+        // Always 503: each call retries within its 2 second budget until the breaker opens
+        HttpRequest failing = HttpRequest.newBuilder(URI.create(httpbin + "/status/503")).build();
+        for (int call = 1; call <= 3; call++) {
+            long start = System.nanoTime();
+            String outcome;
+            try {
+                outcome = "status " + client.send(failing, HttpResponse.BodyHandlers.discarding(), Duration.ofSeconds(2))
+                        .statusCode();
+            } catch (CircuitBreaker.OpenException e) {
+                outcome = e.getMessage();
+            }
+            System.out.println("GET /status/503, call " + call + " -> " + outcome
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        }
+        System.out.println(client.breaker(failing.uri().getAuthority()));
+        System.out.println();
+    }
+    
+    /**
+     * Compressed responses and request bodies
+     */
+    private static void compressedBodies() throws IOException, InterruptedException {
+        System.out.println("12. Compressed Bodies");
+        System.out.println("--------------------");
+        
+        HttpClient client = HttpClients.shared();
+        
+        // HttpClient neither asks for compressed responses nor decodes them by itself
+        HttpRequest get = HttpRequest.newBuilder(URI.create(httpbin + "/gzip"))
+                .header("Accept-Encoding", CompressedBodies.ACCEPT_ENCODING)
+                .build();
+        HttpResponse<String> response = client.send(get, CompressedBodies.decompressing(HttpResponse.BodyHandlers.ofString()));
+        System.out.println("GET /gzip: Content-Encoding " + response.headers().firstValue("Content-Encoding").orElse("none")
+                + ", " + response.headers().firstValue("Content-Length").orElse("?") + " bytes on the wire, "
+                + response.body().length() + " characters decoded");
+        
+        // A batch upload, compressed chunk by chunk while the client sends it
+        String batch = IntStream.range(0, 1_000)
+                .mapToObj(i -> "{\"id\":" + i + ",\"name\":\"Person " + i + "\",\"age\":" + (20 + i % 50) + "}")
+                .collect(Collectors.joining("\n", "", "\n"));
+        HttpRequest post = HttpRequest.newBuilder(URI.create(httpbin + "/post"))
+                .header("Content-Type", "application/x-ndjson")
+                .header("Content-Encoding", CompressedBodies.Encoding.GZIP.token())
+                .POST(CompressedBodies.compress(HttpRequest.BodyPublishers.ofString(batch), CompressedBodies.Encoding.GZIP))
+                .build();
+        HttpResponse<String> posted = client.send(post, HttpResponse.BodyHandlers.ofString());
+        System.out.println("POST " + batch.length() + " bytes of NDJSON as gzip -> status " + posted.statusCode());
+        System.out.println();
+    }
+    
+    /**
+     * Small records batched into NDJSON POSTs under a rate limit
+     */
+    private static void batchedUploads() throws InterruptedException {
+        System.out.println("13. Batched Uploads");
+        System.out.println("-------------------");
+        
+        // Up to 500 records per POST, at most 20 POSTs per second; sent after 20ms if not full
+        int count = local ? 50_000 : 2_000;
+        NdjsonBatcher.Config config = NdjsonBatcher.Config.defaults()
+                .withBatchSize(500, 256 * 1024)
+                .withLinger(Duration.ofMillis(20))
+                .withRate(20, 2)
+                .withCompression(CompressedBodies.Encoding.GZIP);
+        
+        NdjsonBatcher batcher = new NdjsonBatcher(HttpClients.shared(), URI.create(httpbin + "/post"), config);
+        try (batcher) {
+            for (int i = 0; i < count; i++) {
+                batcher.add("{\"id\":" + i + ",\"name\":\"Person " + i + "\",\"age\":" + (20 + i % 50) + "}");
+            }
+            // A single late record, which linger rather than size sends off
+            batcher.add("{\"id\":" + count + ",\"name\":\"Late\",\"age\":30}").join();
+        }
+        // Closing sent what was left and waited for the responses, so the figures are final
+        System.out.println(batcher.stats());
+        System.out.println("Queueing delay per record: " + batcher.queueDelay().summary());
+        System.out.println();
+    }
 }
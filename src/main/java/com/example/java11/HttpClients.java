@@ -0,0 +1,110 @@
+package com.example.java11;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory for tuned HttpClient instances, and the client the HTTP examples share.
+ *
+ * An HttpClient owns a selector thread and a connection pool, so it is meant to be created
+ * once and reused: a client per request pays for a new TCP connection (and TLS handshake)
+ * every time and leaves idle connections and threads behind until it is garbage collected.
+ * Use {@link #shared()} unless a call really needs different settings.
+ *
+ * Connection keep-alive and pool size are not part of HttpClient.Builder; the JDK reads
+ * them once from system properties, see {@link #configureConnectionPool}.
+ */
+public final class HttpClients {
+
+    /**
+     * Client settings.
+     *
+     * @param connectTimeout  how long to wait for a TCP connection to be established
+     * @param version         preferred protocol; HTTP_2 falls back to HTTP/1.1 when the server lacks it
+     * @param redirect        redirect policy
+     * @param virtualThreads  run response handling and async stages on virtual threads, from an
+     *                        executor shared by all clients, instead of the client's default
+     *                        cached thread pool
+     */
+    public record Config(Duration connectTimeout, HttpClient.Version version, HttpClient.Redirect redirect,
+                         boolean virtualThreads) {
+
+        /** 10 second connect timeout, HTTP/2 preferred, normal redirects, virtual threads. */
+        public static Config defaults() {
+            return new Config(Duration.ofSeconds(10), HttpClient.Version.HTTP_2, HttpClient.Redirect.NORMAL, true);
+        }
+
+        public Config withConnectTimeout(Duration connectTimeout) {
+            return new Config(connectTimeout, version, redirect, virtualThreads);
+        }
+
+        public Config withVersion(HttpClient.Version version) {
+            return new Config(connectTimeout, version, redirect, virtualThreads);
+        }
+
+        public Config withRedirect(HttpClient.Redirect redirect) {
+            return new Config(connectTimeout, version, redirect, virtualThreads);
+        }
+
+        public Config withVirtualThreads(boolean virtualThreads) {
+            return new Config(connectTimeout, version, redirect, virtualThreads);
+        }
+    }
+
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+
+    private static volatile boolean clientCreated;
+
+    // Created on first use, so configureConnectionPool can still run before it
+    private static final class Shared {
+        static final HttpClient CLIENT = create(Config.defaults());
+    }
+
+    // One executor for all clients; it holds no threads while idle, so it is never shut down
+    private static final class VirtualThreads {
+        static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    private HttpClients() {}
+
+    /**
+     * The process-wide client built with {@link Config#defaults()}.
+     */
+    public static HttpClient shared() {
+        return Shared.CLIENT;
+    }
+
+    /**
+     * Builds a new client. Callers own it and should close it (HttpClient is AutoCloseable
+     * since Java 21) when it is no longer needed.
+     */
+    public static HttpClient create(Config config) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(config.connectTimeout())
+                .version(config.version())
+                .followRedirects(config.redirect());
+        if (config.virtualThreads()) {
+            builder.executor(VirtualThreads.EXECUTOR);
+        }
+        clientCreated = true;
+        return builder.build();
+    }
+
+    /**
+     * Sets how long idle connections stay in the pool and how many the pool keeps per client
+     * (0 for no limit). The JDK reads these settings once, when its HTTP client implementation
+     * is first loaded, so this must run before any client in the process is created.
+     *
+     * @throws IllegalStateException if a client has already been created through this factory
+     */
+    public static void configureConnectionPool(Duration keepAlive, int maxConnections) {
+        if (clientCreated) {
+            throw new IllegalStateException("Connection pool settings must be applied before the first client is created");
+        }
+        System.setProperty(KEEP_ALIVE_PROPERTY, Long.toString(Math.max(1, keepAlive.toSeconds())));
+        System.setProperty(POOL_SIZE_PROPERTY, Integer.toString(maxConnections));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.java11;
+
+import com.example.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Sends a GET to every URI of a (possibly very long) stream while bounding how many requests
+ * are in flight overall and per host, and publishes the results in completion order.
+ *
+ * This is {@code multipleAsyncRequests} from {@link HttpClientExample} scaled to tens of
+ * thousands of URIs: instead of starting every request up front, URIs are pulled from the
+ * stream only when a global permit is free. Each request then runs on its own virtual thread
+ * and waits for a permit for its host. A result holds its global permit until the subscriber
+ * has received it, so a slow subscriber slows down the fan-out instead of buffering results.
+ *
+ * The first failure that the {@code fatal} predicate accepts interrupts every running request
+ * and ends the stream with onError. Other failures are published as results with an error.
+ * Latencies of answered requests are recorded per host in {@link #hostLatencies()}.
+ */
+public final class HttpFanOut {
+
+    /**
+     * Outcome of one request: either a response (of any status) or the error that prevented one.
+     */
+    public record Result<T>(URI uri, HttpResponse<T> response, Throwable error, long latencyNanos) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final HttpClient client;
+    private final int maxInFlight;
+    private final int maxInFlightPerHost;
+    private final Predicate<Throwable> fatal;
+
+    // Shared by all fan-outs from this instance, so the per-host limit holds across them
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> hostLatencies = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a fan-out in which every failed request is fatal.
+     */
+    public HttpFanOut(HttpClient client, int maxInFlight, int maxInFlightPerHost) {
+        this(client, maxInFlight, maxInFlightPerHost, error -> true);
+    }
+
+    /**
+     * @param fatal decides which request failures cancel the whole fan-out
+     */
+    public HttpFanOut(HttpClient client, int maxInFlight, int maxInFlightPerHost, Predicate<Throwable> fatal) {
+        if (maxInFlight < 1 || maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("In-flight limits must be at least 1");
+        }
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.fatal = fatal;
+    }
+
+    /**
+     * Returns a publisher that, once subscribed, requests every URI of the stream.
+     * The stream is consumed lazily and only once, so the publisher accepts a single subscriber.
+     */
+    public <T> Flow.Publisher<Result<T>> fetch(Stream<URI> uris, HttpResponse.BodyHandler<T> handler) {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        return subscriber -> {
+            if (!subscribed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override public void request(long n) {}
+                    @Override public void cancel() {}
+                });
+                subscriber.onError(new IllegalStateException("A fan-out publisher accepts only one subscriber"));
+                return;
+            }
+            new Run<>(uris.iterator(), handler, subscriber).start();
+        };
+    }
+
+    /**
+     * Latency of answered requests, by host (authority) of the URI.
+     */
+    public Map<String, LatencyHistogram> hostLatencies() {
+        return Collections.unmodifiableMap(hostLatencies);
+    }
+
+    /**
+     * State of one subscription: a driver thread pulling URIs, one virtual thread per request,
+     * and a serialized drain loop delivering queued results as demand allows.
+     */
+    private final class Run<T> implements Flow.Subscription {
+
+        private final Iterator<URI> uris;
+        private final HttpResponse.BodyHandler<T> handler;
+        private final Flow.Subscriber<? super Result<T>> subscriber;
+
+        private final Semaphore globalPermits = new Semaphore(maxInFlight);
+        private final Queue<Result<T>> results = new ConcurrentLinkedQueue<>();
+        private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger drainers = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private volatile Thread driver;
+        private volatile boolean driverDone;
+        private volatile boolean cancelled;
+        private volatile boolean terminated;
+
+        Run(Iterator<URI> uris, HttpResponse.BodyHandler<T> handler, Flow.Subscriber<? super Result<T>> subscriber) {
+            this.uris = uris;
+            this.handler = handler;
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            driver = Thread.ofVirtual().name("fan-out-driver").start(this::drive);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Demand must be positive, was " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            terminated = true;
+            interruptAll();
+        }
+
+        private void drive() {
+            try {
+                while (!cancelled && uris.hasNext()) {
+                    URI uri = uris.next();
+                    globalPermits.acquire();
+                    if (cancelled) {
+                        break;
+                    }
+                    pending.incrementAndGet();
+                    Thread.ofVirtual().name("fan-out-request").start(() -> send(uri));
+                }
+            } catch (InterruptedException e) {
+                // Cancelled while waiting for a permit
+            } catch (RuntimeException e) {
+                fail(e);  // The URI stream itself failed
+            } finally {
+                driverDone = true;
+                drain();
+            }
+        }
+
+        private void send(URI uri) {
+            Thread current = Thread.currentThread();
+            running.add(current);
+            boolean queued = false;
+            try {
+                if (cancelled) {
+                    return;
+                }
+                String host = uri.getAuthority();
+                Semaphore hostPermit = hostPermits.computeIfAbsent(host, h -> new Semaphore(maxInFlightPerHost));
+                hostPermit.acquire();
+                long start = System.nanoTime();
+                Result<T> result;
+                try {
+                    HttpResponse<T> response = client.send(HttpRequest.newBuilder(uri).build(), handler);
+                    long latency = System.nanoTime() - start;
+                    hostLatencies.computeIfAbsent(host, h -> new LatencyHistogram()).record(latency);
+                    result = new Result<>(uri, response, null, latency);
+                } catch (IOException | RuntimeException e) {
+                    result = new Result<>(uri, null, e, System.nanoTime() - start);
+                } finally {
+                    hostPermit.release();
+                }
+
+                if (!result.isSuccess() && fatal.test(result.error())) {
+                    fail(result.error());
+                } else if (!cancelled) {
+                    results.add(result);
+                    queued = true;
+                }
+            } catch (InterruptedException e) {
+                // Cancelled while waiting for a host permit or the response
+            } finally {
+                running.remove(current);
+                if (!queued) {
+                    globalPermits.release();
+                }
+                pending.decrementAndGet();
+                drain();
+            }
+        }
+
+        private void fail(Throwable error) {
+            if (failure.compareAndSet(null, error)) {
+                interruptAll();
+                drain();
+            }
+        }
+
+        private void interruptAll() {
+            cancelled = true;
+            Thread driverThread = driver;
+            if (driverThread != null) {
+                driverThread.interrupt();
+            }
+            running.forEach(Thread::interrupt);
+        }
+
+        /**
+         * Delivers results, completion or the failure. Only one thread runs the loop at a time;
+         * callers arriving meanwhile make it loop again instead of waiting.
+         */
+        private void drain() {
+            if (drainers.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (terminated) {
+                    results.clear();
+                } else if (failure.get() != null) {
+                    terminated = true;
+                    results.clear();
+                    subscriber.onError(failure.get());
+                } else {
+                    Result<T> next;
+                    while (demand.get() > 0 && (next = results.poll()) != null) {
+                        demand.decrementAndGet();
+                        globalPermits.release();
+                        subscriber.onNext(next);
+                    }
+                    if (driverDone && pending.get() == 0 && results.isEmpty()) {
+                        terminated = true;
+                        subscriber.onComplete();
+                    }
+                }
+                missed = drainers.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
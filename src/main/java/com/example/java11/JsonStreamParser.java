@@ -0,0 +1,353 @@
+package com.example.java11;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.regex.Pattern;
+
+/**
+ * Push parser for UTF-8 JSON that accepts input in arbitrary chunks, e.g. the ByteBuffers of
+ * an HTTP response as they arrive, and reports what it reads to a {@link Listener}.
+ *
+ * Nothing but the current token is buffered, so memory use depends on the longest string or
+ * number in the document, not on its size. Several top-level values separated by whitespace
+ * are accepted, which also makes the parser suitable for newline-delimited JSON. An escaped
+ * surrogate that is not half of a complete pair becomes U+FFFD.
+ */
+public final class JsonStreamParser {
+
+    /**
+     * Receives parse events in document order. All methods default to doing nothing.
+     */
+    public interface Listener {
+        default void startObject() {}
+
+        default void endObject() {}
+
+        default void startArray() {}
+
+        default void endArray() {}
+
+        default void fieldName(String name) {}
+
+        default void stringValue(String value) {}
+
+        /** The number exactly as written, e.g. "-1.5e3"; parse it as the caller needs. */
+        default void numberValue(String number) {}
+
+        default void booleanValue(boolean value) {}
+
+        default void nullValue() {}
+    }
+
+    /**
+     * Thrown when the input is not valid JSON.
+     */
+    public static class MalformedJsonException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+
+    private enum State {
+        VALUE, ARRAY_FIRST, OBJECT_FIRST, NAME, COLON, AFTER_VALUE,
+        STRING, STRING_ESCAPE, STRING_UNICODE, NUMBER, LITERAL
+    }
+
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private final Listener listener;
+
+    // Open containers, '{' or '['
+    private final Deque<Character> containers = new ArrayDeque<>();
+
+    // Input is copied out of (possibly read-only) buffers in blocks rather than byte by byte
+    private final byte[] block = new byte[8192];
+
+    // Bytes of the string, number or literal being read
+    private byte[] token = new byte[64];
+    private int tokenLength;
+
+    private State state = State.VALUE;
+    private boolean stringIsName;
+    private int unicodeDigits;
+    private int unicodeValue;
+    // An escaped high surrogate waiting for the low surrogate that completes it
+    private int highSurrogate = -1;
+    private long position;
+
+    public JsonStreamParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer, advancing its position.
+     *
+     * @throws MalformedJsonException if the input so far is not valid JSON
+     */
+    public void feed(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int n = Math.min(buffer.remaining(), block.length);
+            buffer.get(block, 0, n);
+            for (int i = 0; i < n; i++) {
+                accept(block[i]);
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Signals the end of input.
+     *
+     * @throws MalformedJsonException if the input ends inside a value
+     */
+    public void finish() {
+        if (state == State.NUMBER || state == State.LITERAL) {
+            endScalarToken();
+        }
+        if (state != State.VALUE || !containers.isEmpty()) {
+            throw error("Unexpected end of input");
+        }
+    }
+
+    /** Bytes consumed so far. */
+    public long position() {
+        return position;
+    }
+
+    private void accept(byte b) {
+        switch (state) {
+            case STRING -> acceptStringByte(b);
+            case STRING_ESCAPE -> acceptEscape(b);
+            case STRING_UNICODE -> acceptUnicodeDigit(b);
+            case NUMBER, LITERAL -> {
+                if (isNumberOrLiteralByte(b)) {
+                    append(b);
+                } else {
+                    endScalarToken();
+                    accept(b);
+                }
+            }
+            default -> acceptStructural(b);
+        }
+    }
+
+    private void acceptStructural(byte b) {
+        if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            return;
+        }
+        switch (state) {
+            case VALUE, ARRAY_FIRST -> {
+                if (b == ']' && state == State.ARRAY_FIRST) {
+                    closeContainer('[');
+                } else {
+                    startValue(b);
+                }
+            }
+            case OBJECT_FIRST, NAME -> {
+                if (b == '}' && state == State.OBJECT_FIRST) {
+                    closeContainer('{');
+                } else if (b == '"') {
+                    stringIsName = true;
+                    state = State.STRING;
+                } else {
+                    throw error("Expected a field name");
+                }
+            }
+            case COLON -> {
+                if (b != ':') {
+                    throw error("Expected ':'");
+                }
+                state = State.VALUE;
+            }
+            case AFTER_VALUE -> {
+                Character open = containers.peek();
+                if (b == ',' && open != null) {
+                    state = open == '{' ? State.NAME : State.VALUE;
+                } else if (b == '}' || b == ']') {
+                    closeContainer(b == '}' ? '{' : '[');
+                } else {
+                    throw error("Expected ',' or the end of a container");
+                }
+            }
+            default -> throw new IllegalStateException(state.name());
+        }
+    }
+
+    private void startValue(byte b) {
+        switch (b) {
+            case '{' -> {
+                containers.push('{');
+                listener.startObject();
+                state = State.OBJECT_FIRST;
+            }
+            case '[' -> {
+                containers.push('[');
+                listener.startArray();
+                state = State.ARRAY_FIRST;
+            }
+            case '"' -> {
+                stringIsName = false;
+                state = State.STRING;
+            }
+            case 't', 'f', 'n' -> {
+                append(b);
+                state = State.LITERAL;
+            }
+            default -> {
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    append(b);
+                    state = State.NUMBER;
+                } else {
+                    throw error("Unexpected character '" + (char) b + "'");
+                }
+            }
+        }
+    }
+
+    private void closeContainer(char open) {
+        Character top = containers.poll();
+        if (top == null || top != open) {
+            throw error("Mismatched '" + (open == '{' ? '}' : ']') + "'");
+        }
+        if (open == '{') {
+            listener.endObject();
+        } else {
+            listener.endArray();
+        }
+        valueDone();
+    }
+
+    private void valueDone() {
+        state = containers.isEmpty() ? State.VALUE : State.AFTER_VALUE;
+    }
+
+    private void acceptStringByte(byte b) {
+        if (b != '\\') {
+            endUnpairedSurrogate();
+        }
+        if (b == '"') {
+            String value = takeToken(StandardCharsets.UTF_8);
+            if (stringIsName) {
+                listener.fieldName(value);
+                state = State.COLON;
+            } else {
+                listener.stringValue(value);
+                valueDone();
+            }
+        } else if (b == '\\') {
+            state = State.STRING_ESCAPE;
+        } else if ((b & 0xFF) < 0x20) {
+            throw error("Control character in string");
+        } else {
+            // Multi-byte UTF-8 sequences may span chunks; they are decoded when the string ends
+            append(b);
+        }
+    }
+
+    private void acceptEscape(byte b) {
+        state = State.STRING;
+        if (b != 'u') {
+            endUnpairedSurrogate();
+        }
+        switch (b) {
+            case '"', '\\', '/' -> append(b);
+            case 'b' -> append((byte) '\b');
+            case 'f' -> append((byte) '\f');
+            case 'n' -> append((byte) '\n');
+            case 'r' -> append((byte) '\r');
+            case 't' -> append((byte) '\t');
+            case 'u' -> {
+                unicodeDigits = 0;
+                unicodeValue = 0;
+                state = State.STRING_UNICODE;
+            }
+            default -> throw error("Invalid escape '\\" + (char) b + "'");
+        }
+    }
+
+    private void acceptUnicodeDigit(byte b) {
+        int digit = Character.digit(b, 16);
+        if (digit < 0) {
+            throw error("Invalid \\u escape");
+        }
+        unicodeValue = unicodeValue * 16 + digit;
+        if (++unicodeDigits < 4) {
+            return;
+        }
+        state = State.STRING;
+        char c = (char) unicodeValue;
+        if (highSurrogate >= 0 && Character.isLowSurrogate(c)) {
+            appendUtf8(Character.toCodePoint((char) highSurrogate, c));
+            highSurrogate = -1;
+            return;
+        }
+        endUnpairedSurrogate();
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else {
+            appendUtf8(Character.isLowSurrogate(c) ? REPLACEMENT : c);
+        }
+    }
+
+    /**
+     * Replaces a pending high surrogate with U+FFFD, once it is clear no low surrogate follows.
+     */
+    private void endUnpairedSurrogate() {
+        if (highSurrogate >= 0) {
+            highSurrogate = -1;
+            appendUtf8(REPLACEMENT);
+        }
+    }
+
+    private void appendUtf8(int codePoint) {
+        for (byte encoded : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+            append(encoded);
+        }
+    }
+
+    private static boolean isNumberOrLiteralByte(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || b == '-' || b == '+' || b == '.' || b == 'E';
+    }
+
+    private void endScalarToken() {
+        String text = takeToken(StandardCharsets.US_ASCII);
+        if (state == State.NUMBER) {
+            if (!NUMBER.matcher(text).matches()) {
+                throw error("Invalid number '" + text + "'");
+            }
+            listener.numberValue(text);
+        } else {
+            switch (text) {
+                case "true" -> listener.booleanValue(true);
+                case "false" -> listener.booleanValue(false);
+                case "null" -> listener.nullValue();
+                default -> throw error("Invalid literal '" + text + "'");
+            }
+        }
+        valueDone();
+    }
+
+    private void append(byte b) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, tokenLength * 2);
+        }
+        token[tokenLength++] = b;
+    }
+
+    private String takeToken(Charset charset) {
+        String text = new String(token, 0, tokenLength, charset);
+        tokenLength = 0;
+        return text;
+    }
+
+    private MalformedJsonException error(String message) {
+        return new MalformedJsonException(message + " at byte " + position);
+    }
+}
@@ -0,0 +1,572 @@
+package com.example.java11;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An embedded stand-in for httpbin.org, so the HTTP client examples and benchmarks run
+ * without network access and with reproducible latency.
+ *
+ * Serves the endpoints used by {@link HttpClientExample}: {@code /get}, {@code /post} and
+ * {@code /image/jpeg}, plus {@code /cache} (ETag and Last-Modified, 304 for conditional
+ * requests), {@code /cache/n} (Cache-Control max-age=n), {@code /status/n} (an empty response
+ * with status n), {@code /gzip} and {@code /deflate} (the {@code /get} response, compressed),
+ * {@code /stream/n} (n newline-delimited
+ * JSON objects, sent with chunked encoding) and {@code /range/n} (n bytes of repeated a-z with
+ * an ETag, supporting HEAD and single byte-range requests), each also under {@code /httpbin/}
+ * like the HTTP/2 endpoint on nghttp2.org. JSON responses have the same shape as httpbin's
+ * (args, headers, origin, url, plus data and json for POST). {@link #start} serves plain
+ * HTTP/1.1, where a client asking for HTTP/2 over http:// simply falls back to HTTP/1.1;
+ * {@link #startH2c} serves the same endpoints over cleartext HTTP/2 with {@link H2cServer}.
+ *
+ * Every response waits for a log-normally distributed latency and fails with HTTP 503 at the
+ * configured error rate. Single requests can override the settings with query parameters:
+ * {@code delay_ms}, {@code bytes} (minimum response size) and {@code status}. As on httpbin,
+ * a number in the path or query that does not parse gets a 400 response.
+ *
+ * Usage from the command line:
+ * <pre>
+ *   java -cp ... com.example.java11.LocalHttpBinServer --port 8080 --latency-ms 20 --error-rate 0.01
+ * </pre>
+ * Add {@code --max-concurrent-streams n} to serve h2c instead.
+ */
+public final class LocalHttpBinServer implements AutoCloseable {
+
+    /**
+     * Behaviour applied to every request.
+     *
+     * @param latency      median delay before responding
+     * @param latencySigma spread of the log-normal delay distribution (0 for a fixed delay)
+     * @param payloadBytes minimum size of JSON responses and the size of the JPEG (0 for defaults)
+     * @param errorRate    probability (0-1) of answering with 503 Service Unavailable
+     * @param truncateRate probability (0-1) of dropping the connection halfway through a
+     *                     {@code /range} body, to exercise client retries
+     */
+    public record Settings(Duration latency, double latencySigma, int payloadBytes, double errorRate,
+                           double truncateRate) {
+
+        /** No added latency, natural payload sizes and no errors. */
+        public static Settings defaults() {
+            return new Settings(Duration.ZERO, 0.0, 0, 0.0, 0.0);
+        }
+
+        public Settings withLatency(Duration latency, double latencySigma) {
+            return new Settings(latency, latencySigma, payloadBytes, errorRate, truncateRate);
+        }
+
+        public Settings withPayloadBytes(int payloadBytes) {
+            return new Settings(latency, latencySigma, payloadBytes, errorRate, truncateRate);
+        }
+
+        public Settings withErrorRate(double errorRate) {
+            return new Settings(latency, latencySigma, payloadBytes, errorRate, truncateRate);
+        }
+
+        public Settings withTruncateRate(double truncateRate) {
+            return new Settings(latency, latencySigma, payloadBytes, errorRate, truncateRate);
+        }
+    }
+
+    // Size of https://httpbin.org/image/jpeg, used when no payload size is configured
+    private static final int DEFAULT_JPEG_BYTES = 35_588;
+
+    // 'a'-'z' repeated, long enough to write any /range slice in 64 KB pieces
+    private static final byte[] ALPHABET_BLOCK = "abcdefghijklmnopqrstuvwxyz".repeat(2521 + 1)
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PADDING_BLOCK = "x".repeat(64 * 1024).getBytes(StandardCharsets.US_ASCII);
+
+    private final InetSocketAddress address;
+    private final Runnable shutdown;
+    private final Settings settings;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    // Validators for /cache; the content never changes while the server runs
+    private final String cacheEtag = "\"cache-" + Long.toHexString(System.nanoTime()) + "\"";
+    private final String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+
+    private LocalHttpBinServer(InetSocketAddress address, Runnable shutdown, Settings settings) {
+        this.address = address;
+        this.shutdown = shutdown;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts a server on the loopback interface. Pass port 0 to pick a free port.
+     */
+    public static LocalHttpBinServer start(int port, Settings settings) throws IOException {
+        // Headers and body are written separately; without TCP_NODELAY, Nagle's algorithm and
+        // delayed ACKs add ~40ms to every keep-alive response. Read once, when the server loads.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Platform threads, not virtual: the JDK server writes bodies while holding a monitor,
+        // which pins the carrier, and a pinned large response can starve a client running on
+        // virtual threads in the same JVM. A cached pool still never limits concurrency.
+        ExecutorService executor = Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("httpbin-", 0).daemon().factory());
+        LocalHttpBinServer httpBin = new LocalHttpBinServer(server.getAddress(), () -> {
+            server.stop(0);
+            executor.close();
+        }, settings);
+        server.createContext("/", httpBin::handle);
+        server.setExecutor(executor);
+        server.start();
+        return httpBin;
+    }
+
+    /**
+     * Starts a server speaking cleartext HTTP/2 (h2c) on the loopback interface, reached by
+     * prior knowledge or by HttpClient's "Upgrade: h2c". Pass port 0 to pick a free port.
+     *
+     * @param maxConcurrentStreams streams a client may have open on one connection
+     */
+    public static LocalHttpBinServer startH2c(int port, Settings settings, int maxConcurrentStreams)
+            throws IOException {
+        H2cServer server = H2cServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxConcurrentStreams);
+        LocalHttpBinServer httpBin = new LocalHttpBinServer(server.getAddress(), server::close, settings);
+        server.start(httpBin::handle);
+        return httpBin;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        int maxConcurrentStreams = 0;
+        Settings settings = Settings.defaults();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--latency-ms" -> settings = settings.withLatency(
+                        Duration.ofMillis(Long.parseLong(args[i + 1])), settings.latencySigma());
+                case "--sigma" -> settings = settings.withLatency(settings.latency(), Double.parseDouble(args[i + 1]));
+                case "--payload-bytes" -> settings = settings.withPayloadBytes(Integer.parseInt(args[i + 1]));
+                case "--error-rate" -> settings = settings.withErrorRate(Double.parseDouble(args[i + 1]));
+                case "--truncate-rate" -> settings = settings.withTruncateRate(Double.parseDouble(args[i + 1]));
+                case "--max-concurrent-streams" -> maxConcurrentStreams = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        LocalHttpBinServer server = maxConcurrentStreams > 0
+                ? startH2c(port, settings, maxConcurrentStreams)
+                : start(port, settings);
+        System.out.println("Serving " + server.baseUri() + " with " + settings + " (Ctrl+C to stop)");
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Base URI without a trailing slash, e.g. http://127.0.0.1:49152
+     */
+    public URI baseUri() {
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    /**
+     * URI of a path on this server, e.g. {@code uri("/get?param=1")}.
+     */
+    public URI uri(String pathAndQuery) {
+        return URI.create(baseUri() + pathAndQuery);
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /** Requests received, including failed ones. */
+    public long requests() {
+        return requests.get();
+    }
+
+    /** Requests answered with an injected error status. */
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    @Override
+    public void close() {
+        shutdown.run();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            byte[] requestBody = decode(exchange.getRequestHeaders().getFirst("Content-Encoding"),
+                    exchange.getRequestBody().readAllBytes());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            try {
+                if (!delay(query)) {
+                    return;
+                }
+
+                int status = query.containsKey("status") ? Integer.parseInt(query.get("status")) : 200;
+                if (status == 200 && settings.errorRate() > 0
+                        && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                    status = 503;
+                }
+                if (status != 200) {
+                    injectedErrors.incrementAndGet();
+                    sendJson(exchange, status, "{\"error\": \"injected\", \"status\": " + status + "}", 0);
+                    return;
+                }
+
+                int minBytes = query.containsKey("bytes") ? Integer.parseInt(query.get("bytes")) : settings.payloadBytes();
+                String path = exchange.getRequestURI().getPath();
+                if (path.startsWith("/httpbin/")) {
+                    path = path.substring("/httpbin".length());
+                }
+                String method = exchange.getRequestMethod();
+                switch (path) {
+                    case "/get" -> sendJson(exchange, 200, echo(exchange, query, null), minBytes);
+                    case "/post" -> {
+                        if (!method.equals("POST")) {
+                            sendJson(exchange, 405, "{\"error\": \"method not allowed\"}", 0);
+                        } else {
+                            sendJson(exchange, 200, echo(exchange, query, requestBody), minBytes);
+                        }
+                    }
+                    case "/image/jpeg" -> send(exchange, 200, "image/jpeg", jpeg(minBytes > 0 ? minBytes : DEFAULT_JPEG_BYTES));
+                    case "/cache" -> sendCache(exchange, query, minBytes);
+                    case "/gzip", "/deflate" -> sendCompressed(exchange, path.substring(1), echo(exchange, query, null));
+                    default -> {
+                        if (path.startsWith("/cache/")) {
+                            int maxAge = Integer.parseInt(path.substring("/cache/".length()));
+                            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=" + maxAge);
+                            sendJson(exchange, 200, echo(exchange, query, null), minBytes);
+                        } else if (path.startsWith("/stream/")) {
+                            sendStream(exchange, Integer.parseInt(path.substring("/stream/".length())), query);
+                        } else if (path.startsWith("/range/")) {
+                            sendRange(exchange, Long.parseLong(path.substring("/range/".length())));
+                        } else if (path.startsWith("/status/")) {
+                            setHeaders(exchange, "text/html; charset=utf-8");
+                            exchange.sendResponseHeaders(Integer.parseInt(path.substring("/status/".length())), -1);
+                        } else {
+                            sendJson(exchange, 404, "{\"error\": \"not found\", \"path\": " + quote(path) + "}", 0);
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // A malformed number in the path or query, e.g. /status/abc or ?delay_ms=x
+                sendJson(exchange, 400, "{\"error\": \"bad request\", \"message\": " + quote(e.getMessage()) + "}", 0);
+            }
+        }
+    }
+
+    /**
+     * Sleeps for the injected latency; returns false if the server is shutting down.
+     */
+    private boolean delay(Map<String, String> query) {
+        long nanos;
+        if (query.containsKey("delay_ms")) {
+            nanos = Duration.ofMillis(Long.parseLong(query.get("delay_ms"))).toNanos();
+        } else {
+            double factor = Math.exp(settings.latencySigma() * ThreadLocalRandom.current().nextGaussian());
+            nanos = (long) (settings.latency().toNanos() * factor);
+        }
+        if (nanos <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * httpbin-style description of the request; for POST also the body as data and json.
+     */
+    private static String echo(HttpExchange exchange, Map<String, String> query, byte[] body) {
+        StringBuilder json = new StringBuilder("{\n  \"args\": ").append(toJson(query));
+
+        Map<String, String> headers = new TreeMap<>();
+        Headers requestHeaders = exchange.getRequestHeaders();
+        requestHeaders.forEach((name, values) -> headers.put(name, String.join(",", values)));
+        json.append(",\n  \"headers\": ").append(toJson(headers));
+
+        if (body != null) {
+            String text = new String(body, StandardCharsets.UTF_8);
+            String contentType = requestHeaders.getFirst("Content-Type");
+            boolean isJson = contentType != null && contentType.startsWith("application/json");
+            json.append(",\n  \"data\": ").append(quote(text));
+            // The body is echoed verbatim rather than parsed, so it must already be valid JSON
+            json.append(",\n  \"json\": ").append(isJson && !text.isBlank() ? text : "null");
+        }
+
+        json.append(",\n  \"origin\": ").append(quote(exchange.getRemoteAddress().getAddress().getHostAddress()));
+        String host = requestHeaders.getFirst("Host");
+        json.append(",\n  \"url\": ").append(quote("http://" + host + exchange.getRequestURI()));
+        return json.append("\n}\n").toString();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json, int minBytes) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        if (body.length < minBytes) {
+            sendPadded(exchange, status, json, minBytes);
+        } else {
+            send(exchange, status, "application/json", body);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        setHeaders(exchange, contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Adds a "padding" field so the JSON document is exactly minBytes long. The padding is
+     * streamed from a shared block, so large responses do not allocate on the server.
+     */
+    private static void sendPadded(HttpExchange exchange, int status, String json, long minBytes) throws IOException {
+        String head = json.substring(0, json.lastIndexOf('}')).stripTrailing();
+        byte[] open = (head + ",\n  \"padding\": \"").getBytes(StandardCharsets.UTF_8);
+        byte[] close = "\"\n}\n".getBytes(StandardCharsets.UTF_8);
+        long fill = Math.max(0, minBytes - open.length - close.length);
+
+        setHeaders(exchange, "application/json");
+        exchange.sendResponseHeaders(status, open.length + fill + close.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(open);
+            for (long remaining = fill; remaining > 0; remaining -= PADDING_BLOCK.length) {
+                out.write(PADDING_BLOCK, 0, (int) Math.min(remaining, PADDING_BLOCK.length));
+            }
+            out.write(close);
+        }
+    }
+
+    /**
+     * httpbin's /cache: 304 Not Modified for any conditional request, otherwise the /get
+     * response with an ETag and Last-Modified.
+     */
+    private void sendCache(HttpExchange exchange, Map<String, String> query, int minBytes) throws IOException {
+        Headers request = exchange.getRequestHeaders();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", cacheEtag);
+        headers.set("Last-Modified", lastModified);
+        if (request.containsKey("If-None-Match") || request.containsKey("If-Modified-Since")) {
+            setHeaders(exchange, "application/json");
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        sendJson(exchange, 200, echo(exchange, query, null), minBytes);
+    }
+
+    /**
+     * httpbin's /stream/n: the /get response as n compact JSON lines, each with an "id",
+     * written one by one with chunked transfer encoding.
+     */
+    private static void sendStream(HttpExchange exchange, int lines, Map<String, String> query) throws IOException {
+        String compact = echo(exchange, query, null).replaceAll("\n\\s*", "");
+        byte[] rest = (", " + compact.substring(1) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        setHeaders(exchange, "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        // Buffered so that each chunk holds many lines rather than one
+        try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024)) {
+            for (int id = 0; id < lines; id++) {
+                out.write(("{\"id\": " + id).getBytes(StandardCharsets.US_ASCII));
+                out.write(rest);
+            }
+        }
+    }
+
+    /**
+     * httpbin's /range/n: n bytes where byte i is 'a' + i % 26. Honours a single
+     * "Range: bytes=first-last" (or "first-" or "-suffix"), with If-Range against the ETag.
+     */
+    private void sendRange(HttpExchange exchange, long size) throws IOException {
+        String etag = "\"range" + size + "\"";
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("ETag", etag);
+        setHeaders(exchange, "application/octet-stream");
+
+        long first = 0;
+        long last = size - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && range.startsWith("bytes=") && !range.contains(",")
+                && (ifRange == null || ifRange.equals(etag))) {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    first = Math.max(0, size - Long.parseLong(spec.substring(1)));
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        last = Math.min(last, Long.parseLong(spec.substring(dash + 1)));
+                    }
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                first = size;  // Unparseable, answered as unsatisfiable below
+            }
+            if (first >= size || first > last) {
+                headers.set("Content-Range", "bytes */" + size);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            status = 206;
+            headers.set("Content-Range", "bytes " + first + "-" + last + "/" + size);
+        }
+
+        long length = last - first + 1;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            // HttpServer only keeps an explicit Content-Length header for HEAD responses
+            headers.set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+
+        // Optionally stop halfway; closing early makes the server drop the connection
+        long limit = settings.truncateRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.truncateRate()
+                ? length / 2 : length;
+        OutputStream out = exchange.getResponseBody();
+        long offset = first;
+        for (long remaining = limit; remaining > 0; ) {
+            int start = (int) (offset % 26);
+            int n = (int) Math.min(remaining, ALPHABET_BLOCK.length - start);
+            out.write(ALPHABET_BLOCK, start, n);
+            offset += n;
+            remaining -= n;
+        }
+        if (limit < length) {
+            injectedErrors.incrementAndGet();
+        }
+        out.close();
+    }
+
+    /**
+     * Like httpbin, adds {@code "gzipped": true} or {@code "deflated": true} to the JSON and
+     * sends it with the matching Content-Encoding.
+     */
+    private static void sendCompressed(HttpExchange exchange, String encoding, String json) throws IOException {
+        String flag = encoding.equals("gzip") ? "gzipped" : "deflated";
+        json = json.substring(0, json.lastIndexOf('}')).stripTrailing() + ",\n  \"" + flag + "\": true\n}\n";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(body) : new DeflaterOutputStream(body)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        send(exchange, 200, "application/json", body.toByteArray());
+    }
+
+    /**
+     * Decodes a request body sent with Content-Encoding gzip or deflate.
+     */
+    private static byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        if (contentEncoding == null || body.length == 0) {
+            return body;
+        }
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip" -> new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            case "deflate" -> new InflaterInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            default -> body;
+        };
+    }
+
+    private static void setHeaders(HttpExchange exchange, String contentType) {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Server", "LocalHttpBinServer");
+    }
+
+    /**
+     * A synthetic JPEG of the requested size: JFIF markers around deterministic filler bytes.
+     */
+    private static byte[] jpeg(int size) {
+        byte[] header = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10,
+                'J', 'F', 'I', 'F', 0x00, 0x01, 0x01, 0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00};
+        byte[] image = new byte[Math.max(size, header.length + 2)];
+        System.arraycopy(header, 0, image, 0, header.length);
+        for (int i = header.length; i < image.length - 2; i++) {
+            image[i] = (byte) (i * 31);
+        }
+        image[image.length - 2] = (byte) 0xFF;
+        image[image.length - 1] = (byte) 0xD9;
+        return image;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        Arrays.stream(rawQuery.split("&")).filter(s -> !s.isEmpty()).forEach(pair -> {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        });
+        return query;
+    }
+
+    private static String toJson(Map<String, String> map) {
+        if (map.isEmpty()) {
+            return "{}";
+        }
+        StringBuilder json = new StringBuilder("{");
+        map.forEach((k, v) -> json.append("\n    ").append(quote(k)).append(": ").append(quote(v)).append(','));
+        json.setLength(json.length() - 1);
+        return json.append("\n  }").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
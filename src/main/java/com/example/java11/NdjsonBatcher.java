@@ -0,0 +1,401 @@
+package com.example.java11;
+
+import com.example.LatencyHistogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects JSON records into batches and POSTs each batch as one newline-delimited JSON
+ * (NDJSON) body, instead of one request per record.
+ *
+ * A batch is sent once it holds {@code maxRecords} records or {@code maxBytes} bytes, or
+ * {@code linger} after its first record arrived, whichever comes first. The linger time
+ * bounds how long a record waits when traffic is light; under load batches fill up and go
+ * out at once. Outgoing POSTs are shaped by a {@link TokenBucket} and at most
+ * {@code maxInFlight} sealed batches are queued or awaiting their response at a time;
+ * {@link #add} blocks beyond that, so a producer slows down to what the server accepts instead
+ * of piling up batches.
+ *
+ * Every record's future completes when its batch has been answered with a 2xx status, and
+ * fails with the batch otherwise; retrying is up to the caller. Batches can be sent out of
+ * order when records are added from several threads.
+ */
+public final class NdjsonBatcher implements AutoCloseable {
+
+    /**
+     * @param maxRecords        records per batch
+     * @param maxBytes          body size per batch; a larger single record is sent on its own
+     * @param linger            how long a batch waits for more records after its first one
+     * @param requestsPerSecond sustained rate of POSTs (0 for no limit)
+     * @param burst             POSTs that may go out back to back after a quiet period
+     * @param maxInFlight       batches sent or waiting to be sent before {@link #add} blocks
+     * @param compression       encoding for the request bodies, or null to send them as is
+     */
+    public record Config(int maxRecords, int maxBytes, Duration linger, double requestsPerSecond, int burst,
+                         int maxInFlight, CompressedBodies.Encoding compression) {
+
+        /** 1000 records or 1 MB per batch, 50ms linger, no rate limit, 4 in flight, uncompressed. */
+        public static Config defaults() {
+            return new Config(1_000, 1024 * 1024, Duration.ofMillis(50), 0, 1, 4, null);
+        }
+
+        public Config withBatchSize(int maxRecords, int maxBytes) {
+            return new Config(maxRecords, maxBytes, linger, requestsPerSecond, burst, maxInFlight, compression);
+        }
+
+        public Config withLinger(Duration linger) {
+            return new Config(maxRecords, maxBytes, linger, requestsPerSecond, burst, maxInFlight, compression);
+        }
+
+        public Config withRate(double requestsPerSecond, int burst) {
+            return new Config(maxRecords, maxBytes, linger, requestsPerSecond, burst, maxInFlight, compression);
+        }
+
+        public Config withMaxInFlight(int maxInFlight) {
+            return new Config(maxRecords, maxBytes, linger, requestsPerSecond, burst, maxInFlight, compression);
+        }
+
+        public Config withCompression(CompressedBodies.Encoding compression) {
+            return new Config(maxRecords, maxBytes, linger, requestsPerSecond, burst, maxInFlight, compression);
+        }
+    }
+
+    /**
+     * Counters since the batcher was created.
+     *
+     * @param fillRatio mean fill of the sent batches, relative to whichever of maxRecords and
+     *                  maxBytes was closer; low values mean linger, not size, ends the batches
+     */
+    public record Stats(long records, long batches, long failedBatches, long fullBatches, long lingeredBatches,
+                        double fillRatio) {}
+
+    private enum Trigger { FULL, LINGER, FLUSH }
+
+    /**
+     * Records collected for one POST. Filled under the lock; read by the sender once queued.
+     */
+    private static final class Batch {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final CompletableFuture<Void> sent = new CompletableFuture<>();
+        long[] addedNanos = new long[16];
+        int records;
+        ScheduledFuture<?> lingerTimer;
+
+        void add(byte[] line, long now) {
+            if (records == addedNanos.length) {
+                addedNanos = Arrays.copyOf(addedNanos, records * 2);
+            }
+            addedNanos[records++] = now;
+            body.writeBytes(line);
+        }
+    }
+
+    private static final Batch END = new Batch();
+
+    private final HttpClient client;
+    private final URI uri;
+    private final Config config;
+    private final TokenBucket rateLimiter;
+    private final BlockingQueue<Batch> sealed = new LinkedBlockingQueue<>();
+    // One permit per sealed batch, from before it is queued until its response arrives
+    private final Semaphore inFlight;
+    private final ScheduledThreadPoolExecutor lingerTimers;
+    private final Thread sender;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition enqueued = lock.newCondition();
+    private Batch current;  // Guarded by lock
+    private boolean closed;  // Guarded by lock
+    private int sealedNotQueued;  // Guarded by lock
+
+    private final LatencyHistogram queueDelay = new LatencyHistogram();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong fullBatches = new AtomicLong();
+    private final AtomicLong lingeredBatches = new AtomicLong();
+    private final DoubleAdder fill = new DoubleAdder();
+
+    public NdjsonBatcher(HttpClient client, URI uri, Config config) {
+        if (config.maxRecords() < 1 || config.maxBytes() < 1 || config.maxInFlight() < 1) {
+            throw new IllegalArgumentException("Batch sizes and maxInFlight must be at least 1");
+        }
+        this.client = client;
+        this.uri = uri;
+        this.config = config;
+        this.rateLimiter = config.requestsPerSecond() > 0 ? new TokenBucket(config.requestsPerSecond(), config.burst()) : null;
+        this.inFlight = new Semaphore(config.maxInFlight());
+        this.lingerTimers = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("ndjson-linger").daemon().factory());
+        this.lingerTimers.setRemoveOnCancelPolicy(true);
+        this.sender = Thread.ofVirtual().name("ndjson-sender").start(this::sendLoop);
+    }
+
+    /**
+     * Adds one JSON value, which must not contain line breaks. Blocks while
+     * {@code maxInFlight} batches are already waiting or being sent.
+     *
+     * @return completes when the record's batch has been accepted by the server
+     * @throws IllegalStateException if the batcher has been closed
+     */
+    public CompletableFuture<Void> add(String json) throws InterruptedException {
+        if (json.indexOf('\n') >= 0 || json.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("NDJSON records must be on a single line");
+        }
+        byte[] line = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        List<Batch> full = new ArrayList<>(2);
+        CompletableFuture<Void> sent;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Batcher is closed");
+            }
+            if (current != null && current.body.size() + line.length > config.maxBytes()) {
+                full.add(seal(Trigger.FULL));
+            }
+            if (current == null) {
+                current = new Batch();
+                Batch batch = current;
+                current.lingerTimer = lingerTimers.schedule(() -> lingerExpired(batch),
+                        config.linger().toNanos(), TimeUnit.NANOSECONDS);
+            }
+            current.add(line, System.nanoTime());
+            sent = current.sent;
+            if (current.records == config.maxRecords() || current.body.size() >= config.maxBytes()) {
+                full.add(seal(Trigger.FULL));
+            }
+        } finally {
+            lock.unlock();
+        }
+        records.incrementAndGet();
+        enqueue(full);
+        return sent;
+    }
+
+    /**
+     * Sends the records collected so far without waiting for the batch to fill or linger.
+     *
+     * @return completes when that batch has been accepted; already complete if it was empty
+     */
+    public CompletableFuture<Void> flush() throws InterruptedException {
+        Batch batch;
+        lock.lock();
+        try {
+            batch = current == null ? null : seal(Trigger.FLUSH);
+        } finally {
+            lock.unlock();
+        }
+        if (batch == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        enqueue(List.of(batch));
+        return batch.sent;
+    }
+
+    /**
+     * Sends what is left and waits until every batch has been answered. Like
+     * {@code ExecutorService.close()}, this keeps waiting if interrupted and restores the
+     * interrupt status before returning.
+     */
+    @Override
+    public void close() {
+        Batch last;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = current == null ? null : seal(Trigger.FLUSH);
+        } finally {
+            lock.unlock();
+        }
+        if (last != null) {
+            enqueueUninterruptibly(last);
+        }
+        // No batch can be sealed any more; wait for those sealed earlier to reach the queue
+        lock.lock();
+        try {
+            while (sealedNotQueued > 0) {
+                enqueued.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        sealed.add(END);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                sender.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        inFlight.acquireUninterruptibly(config.maxInFlight());  // All responses are in
+        lingerTimers.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Stats stats() {
+        long sent = batches.get();
+        return new Stats(records.get(), sent, failedBatches.get(), fullBatches.get(), lingeredBatches.get(),
+                sent == 0 ? 0 : fill.sum() / sent);
+    }
+
+    /**
+     * Time from {@link #add} until the record's batch was sent, per record. Includes the
+     * linger time, waiting for the rate limiter and for a free in-flight slot.
+     */
+    public LatencyHistogram queueDelay() {
+        return queueDelay;
+    }
+
+    private void lingerExpired(Batch batch) {
+        Batch expired = null;
+        lock.lock();
+        try {
+            if (current == batch) {
+                expired = seal(Trigger.LINGER);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (expired != null) {
+            try {
+                enqueue(List.of(expired));
+            } catch (InterruptedException e) {
+                // Only when the timer is shut down; enqueue has failed the batch
+            }
+        }
+    }
+
+    /**
+     * Queues batches sealed by this thread, waiting for an in-flight permit for each. If
+     * interrupted, the batches not yet queued fail with the interruption.
+     */
+    private void enqueue(List<Batch> toQueue) throws InterruptedException {
+        int queued = 0;
+        try {
+            for (Batch batch : toQueue) {
+                inFlight.acquire();
+                sealed.add(batch);
+                queued++;
+            }
+        } catch (InterruptedException e) {
+            for (Batch batch : toQueue.subList(queued, toQueue.size())) {
+                batch.sent.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            queued(toQueue.size());
+        }
+    }
+
+    /**
+     * Like {@link #enqueue} for a single batch, ignoring interrupts; used by {@link #close}.
+     */
+    private void enqueueUninterruptibly(Batch batch) {
+        try {
+            inFlight.acquireUninterruptibly();
+            sealed.add(batch);
+        } finally {
+            queued(1);
+        }
+    }
+
+    private void queued(int count) {
+        lock.lock();
+        try {
+            sealedNotQueued -= count;
+            if (sealedNotQueued == 0) {
+                enqueued.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the current batch out for sending. Called with the lock held; the caller must
+     * pass the batch to {@link #enqueue}.
+     */
+    private Batch seal(Trigger trigger) {
+        Batch batch = current;
+        current = null;
+        sealedNotQueued++;
+        batch.lingerTimer.cancel(false);
+        switch (trigger) {
+            case FULL -> fullBatches.incrementAndGet();
+            case LINGER -> lingeredBatches.incrementAndGet();
+            case FLUSH -> { }
+        }
+        fill.add(Math.max((double) batch.records / config.maxRecords(), (double) batch.body.size() / config.maxBytes()));
+        return batch;
+    }
+
+    private void sendLoop() {
+        try {
+            while (true) {
+                Batch batch = sealed.take();
+                if (batch == END) {
+                    return;
+                }
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(1);
+                }
+                send(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(Batch batch) {
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.records; i++) {
+            queueDelay.record(now - batch.addedNanos[i]);
+        }
+        batches.incrementAndGet();
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofByteArray(batch.body.toByteArray());
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).header("Content-Type", "application/x-ndjson");
+        if (config.compression() != null) {
+            body = CompressedBodies.compress(body, config.compression());
+            request.header("Content-Encoding", config.compression().token());
+        }
+        client.sendAsync(request.POST(body).build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    inFlight.release();
+                    if (error == null && response.statusCode() / 100 == 2) {
+                        batch.sent.complete(null);
+                        return;
+                    }
+                    failedBatches.incrementAndGet();
+                    batch.sent.completeExceptionally(error != null ? error
+                            : new IOException("Batch of " + batch.records + " records failed with status "
+                                    + response.statusCode()));
+                });
+    }
+}
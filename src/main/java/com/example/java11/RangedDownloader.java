@@ -0,0 +1,446 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a file as several byte ranges fetched in parallel, each on its own virtual
+ * thread and written straight to its place in the file with positional FileChannel writes.
+ *
+ * A HEAD request (or a request for the first byte, where HEAD is refused) first finds the
+ * size, whether the server accepts Range requests and the ETag (or Last-Modified) identifying
+ * the version. Segments are retried with exponential backoff, continuing from the last byte
+ * received. Completed segments are recorded in a ".progress" file next to the ".part" file,
+ * so a download that was interrupted or failed resumes where it stopped, provided the server
+ * still has the same version and the ".part" file, preallocated to the full size when
+ * created, still has that size. Servers that do not support ranges get a single plain GET.
+ */
+public final class RangedDownloader {
+
+    /**
+     * Outcome of a download.
+     *
+     * @param resumedSegments segments already complete from an earlier attempt
+     * @param retries         requests repeated after a failure or a short body
+     */
+    public record Result(Path file, long bytes, int segments, int resumedSegments, int retries, String sha256) {}
+
+    private record Probe(long length, boolean ranged, String validator) {}
+
+    private record Segment(int index, long first, long last) {
+        long length() {
+            return last - first + 1;
+        }
+    }
+
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(100);
+
+    private final HttpClient client;
+    private final int parallelism;
+    private final long segmentBytes;
+    private final int maxAttempts;
+
+    /**
+     * @param parallelism  segments downloaded at the same time
+     * @param segmentBytes size of each range request
+     * @param maxAttempts  attempts per segment before the download fails
+     */
+    public RangedDownloader(HttpClient client, int parallelism, long segmentBytes, int maxAttempts) {
+        if (parallelism < 1 || segmentBytes < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("parallelism, segmentBytes and maxAttempts must be at least 1");
+        }
+        this.client = client;
+        this.parallelism = parallelism;
+        this.segmentBytes = segmentBytes;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Result download(URI uri, Path target) throws IOException, InterruptedException {
+        return download(uri, target, null);
+    }
+
+    /**
+     * Downloads the resource to the target file, replacing it once the download is complete.
+     *
+     * @param expectedSha256 hex SHA-256 the content must have, or null to skip the check
+     * @throws IOException if a segment still fails after all attempts, the resource changes
+     *                     during the download, or the checksum does not match
+     */
+    public Result download(URI uri, Path target, String expectedSha256) throws IOException, InterruptedException {
+        Probe probe = probe(uri);
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path progressFile = target.resolveSibling(target.getFileName() + ".progress");
+
+        List<Segment> segments = split(probe);
+        Progress progress = Progress.load(progressFile, uri, probe, segmentBytes);
+        // A part file of the wrong size was not written by this download, or was truncated
+        boolean fresh = progress == null || !Files.exists(part)
+                || (probe.length() > 0 && Files.size(part) != probe.length());
+        if (fresh) {
+            progress = new Progress(progressFile, uri, probe, segmentBytes);
+            Files.deleteIfExists(part);
+        }
+        int resumed = progress.completed();
+
+        AtomicInteger retries = new AtomicInteger();
+        Result result;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ)) {
+            if (fresh && probe.length() > 0) {
+                // Give the file its final size up front, so segments never write past its end
+                channel.write(ByteBuffer.allocate(1), probe.length() - 1);
+            }
+            Queue<Segment> remaining = new ConcurrentLinkedQueue<>();
+            for (Segment segment : segments) {
+                if (!progress.isDone(segment.index())) {
+                    remaining.add(segment);
+                }
+            }
+            fetchAll(uri, probe, channel, remaining, progress, retries);
+
+            channel.force(true);
+            String sha256 = sha256(channel);
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                // The data is wrong, not just incomplete, so do not resume from it
+                progress.delete();
+                Files.deleteIfExists(part);
+                throw new IOException("Checksum mismatch for " + uri + ": expected " + expectedSha256 + ", got " + sha256);
+            }
+            result = new Result(target, channel.size(), segments.size(), resumed, retries.get(), sha256);
+        }
+        move(part, target);
+        progress.delete();
+        return result;
+    }
+
+    /**
+     * Finds the size, range support and version with HEAD. Servers that reject HEAD (405 and
+     * 501 are common) are asked for the first byte instead, which a server with range support
+     * answers with 206 and the full size in Content-Range; anything else gets a plain GET.
+     */
+    private Probe probe(URI uri) throws IOException, InterruptedException {
+        HttpRequest head = HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        HttpResponse<Void> response = client.send(head, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 200) {
+            HttpHeaders headers = response.headers();
+            long length = headers.firstValueAsLong("Content-Length").orElse(-1);
+            boolean ranged = length > 0 && headers.firstValue("Accept-Ranges").map("bytes"::equalsIgnoreCase).orElse(false);
+            return new Probe(length, ranged, validator(headers));
+        }
+
+        HttpRequest firstByte = HttpRequest.newBuilder(uri).header("Range", "bytes=0-0").build();
+        // Read the body only if it is the single requested byte; closing the stream abandons any other
+        HttpResponse<InputStream> partial = client.send(firstByte, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = partial.body()) {
+            if (partial.statusCode() == 206) {
+                body.readAllBytes();
+                String contentRange = partial.headers().firstValue("Content-Range").orElse("");
+                int slash = contentRange.lastIndexOf('/');
+                if (contentRange.startsWith("bytes 0-0/") && slash > 0) {
+                    try {
+                        long length = Long.parseLong(contentRange.substring(slash + 1));
+                        return new Probe(length, length > 0, validator(partial.headers()));
+                    } catch (NumberFormatException e) {
+                        // Unknown total ("*"): fall through to a plain GET
+                    }
+                }
+            }
+        }
+        return new Probe(-1, false, null);
+    }
+
+    private static String validator(HttpHeaders headers) {
+        return headers.firstValue("ETag").or(() -> headers.firstValue("Last-Modified")).orElse(null);
+    }
+
+    private List<Segment> split(Probe probe) {
+        List<Segment> segments = new ArrayList<>();
+        if (!probe.ranged()) {
+            segments.add(new Segment(0, 0, probe.length() - 1));  // length may be unknown (-1)
+            return segments;
+        }
+        for (long first = 0; first < probe.length(); first += segmentBytes) {
+            segments.add(new Segment(segments.size(), first, Math.min(first + segmentBytes, probe.length()) - 1));
+        }
+        return segments;
+    }
+
+    /**
+     * Runs up to {@code parallelism} workers that take segments from the queue until it is
+     * empty. The first failure stops the other workers; segments finished so far stay recorded.
+     */
+    private void fetchAll(URI uri, Probe probe, FileChannel channel, Queue<Segment> remaining, Progress progress,
+                          AtomicInteger retries) throws IOException, InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(parallelism, remaining.size()); i++) {
+                workers.add(executor.submit(() -> {
+                    Segment segment;
+                    while ((segment = remaining.poll()) != null) {
+                        fetch(uri, probe, channel, segment, retries);
+                        progress.markDone(segment.index(), channel);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    remaining.clear();
+                    workers.forEach(w -> w.cancel(true));
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    throw new IOException("Download of " + uri + " failed", e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches one segment, retrying from the last byte written after errors and short bodies.
+     */
+    private void fetch(URI uri, Probe probe, FileChannel channel, Segment segment, AtomicInteger retries)
+            throws IOException, InterruptedException {
+        AtomicLong written = new AtomicLong();
+        AtomicBoolean overflow = new AtomicBoolean();
+        long limit = segment.last() < 0 ? Long.MAX_VALUE : segment.length();
+        Duration backoff = INITIAL_BACKOFF;
+        for (int attempt = 1; ; attempt++) {
+            if (!probe.ranged()) {
+                written.set(0);  // Without ranges every attempt starts from the beginning
+            }
+            long offset = segment.first() + written.get();
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+            if (probe.ranged()) {
+                request.header("Range", "bytes=" + offset + "-" + segment.last());
+                if (probe.validator() != null) {
+                    request.header("If-Range", probe.validator());  // A changed resource comes back whole, as 200
+                }
+            }
+            int expectedStatus = probe.ranged() ? 206 : 200;
+
+            HttpResponse<Void> response;
+            IOException failure = null;
+            try {
+                // Only a body for exactly the requested range is written; anything else could land in other segments
+                response = client.send(request.build(), info -> info.statusCode() == expectedStatus
+                        && contentRangeMatches(info.headers(), offset, segment, probe)
+                        ? writeAt(channel, offset, limit, written, overflow)
+                        : HttpResponse.BodySubscribers.discarding());
+            } catch (IOException e) {
+                if (overflow.get()) {
+                    throw new IOException("Segment " + segment.index() + " got more than its " + limit + " bytes", e);
+                }
+                response = null;
+                failure = e;
+            }
+
+            if (response != null) {
+                int status = response.statusCode();
+                if (status == expectedStatus) {
+                    if (!contentRangeMatches(response.headers(), offset, segment, probe)) {
+                        throw new IOException("Requested bytes " + offset + "-" + segment.last() + " but got Content-Range '"
+                                + response.headers().firstValue("Content-Range").orElse("") + "'");
+                    }
+                    if (segment.last() < 0 || written.get() == segment.length()) {
+                        return;
+                    }
+                    failure = new IOException("Short body: " + written.get() + " of " + segment.length() + " bytes");
+                } else if (probe.ranged() && status == 200) {
+                    throw new IOException(uri + " changed during the download");
+                } else if (status >= 500 || status == 429) {
+                    failure = new IOException("Server returned " + status);
+                } else {
+                    throw new IOException("Unexpected status " + status + " for " + uri);
+                }
+            }
+
+            if (attempt >= maxAttempts) {
+                throw new IOException("Segment " + segment.index() + " failed after " + attempt + " attempts", failure);
+            }
+            retries.incrementAndGet();
+            Thread.sleep(backoff);
+            backoff = backoff.multipliedBy(2);
+        }
+    }
+
+    /**
+     * Writes the body at the given offset, counting progress in {@code written} so that it
+     * survives a failed response. Bytes past {@code limit} in total are not written; they set
+     * {@code overflow} and fail the response.
+     */
+    private static HttpResponse.BodySubscriber<Void> writeAt(FileChannel channel, long offset, long limit,
+                                                             AtomicLong written, AtomicBoolean overflow) {
+        long start = written.get();
+        return new StreamingBodyHandlers.ChunkSubscriber<>() {
+            @Override
+            void accept(ByteBuffer chunk) throws IOException {
+                if (chunk.remaining() > limit - written.get()) {
+                    overflow.set(true);
+                    chunk.limit(chunk.position() + (int) (limit - written.get()));
+                }
+                while (chunk.hasRemaining()) {
+                    long position = offset + written.get() - start;
+                    written.addAndGet(channel.write(chunk, position));
+                }
+                if (overflow.get()) {
+                    throw new IOException("Body is longer than the " + limit + " bytes requested");
+                }
+            }
+
+            @Override
+            Void finish() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Whether a 206 response covers bytes from {@code offset} to at most the end of the
+     * segment; a shorter range is retried from where it stops. Unranged responses always match.
+     */
+    private static boolean contentRangeMatches(HttpHeaders headers, long offset, Segment segment, Probe probe) {
+        if (!probe.ranged()) {
+            return true;
+        }
+        String contentRange = headers.firstValue("Content-Range").orElse("");
+        String prefix = "bytes " + offset + "-";
+        int slash = contentRange.indexOf('/');
+        if (!contentRange.startsWith(prefix) || slash < prefix.length()) {
+            return false;
+        }
+        try {
+            long last = Long.parseLong(contentRange.substring(prefix.length(), slash));
+            return last >= offset && last <= segment.last();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String sha256(FileChannel channel) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) > 0) {
+            position += n;
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The set of completed segments, saved after each one so a later run can skip them.
+     * Saved progress only counts if the URI, size, version and segment size still match.
+     */
+    private static final class Progress {
+
+        private final Path file;
+        private final Properties properties = new Properties();
+        private final BitSet done = new BitSet();
+
+        Progress(Path file, URI uri, Probe probe, long segmentBytes) {
+            this.file = file;
+            properties.setProperty("uri", uri.toString());
+            properties.setProperty("length", Long.toString(probe.length()));
+            properties.setProperty("validator", String.valueOf(probe.validator()));
+            properties.setProperty("segmentBytes", Long.toString(segmentBytes));
+        }
+
+        static Progress load(Path file, URI uri, Probe probe, long segmentBytes) throws IOException {
+            if (!probe.ranged() || probe.validator() == null || !Files.exists(file)) {
+                return null;
+            }
+            Properties saved = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                saved.load(in);
+            }
+            Progress progress = new Progress(file, uri, probe, segmentBytes);
+            for (String key : List.of("uri", "length", "validator", "segmentBytes")) {
+                if (!progress.properties.getProperty(key).equals(saved.getProperty(key))) {
+                    return null;
+                }
+            }
+            for (String index : saved.getProperty("done", "").split(",")) {
+                if (!index.isEmpty()) {
+                    progress.done.set(Integer.parseInt(index));
+                }
+            }
+            return progress;
+        }
+
+        synchronized boolean isDone(int segment) {
+            return done.get(segment);
+        }
+
+        synchronized int completed() {
+            return done.cardinality();
+        }
+
+        /**
+         * Records a finished segment once its bytes are on disk.
+         */
+        synchronized void markDone(int segment, FileChannel channel) throws IOException {
+            channel.force(false);
+            done.set(segment);
+            properties.setProperty("done", done.stream().mapToObj(Integer::toString)
+                    .reduce((a, b) -> a + "," + b).orElse(""));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Ranged download progress");
+            }
+            move(temp, file);
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Wraps an HttpClient with retries, a deadline per call and a circuit breaker per host.
+ *
+ * Each call gets a time budget. Every attempt's request timeout is cut to what is left of
+ * it, and no retry starts (or waits for a backoff) past the deadline, so a caller never
+ * waits much longer than the budget no matter how many attempts it takes. Retries use
+ * exponential backoff with jitter, so clients that failed together do not retry together;
+ * a Retry-After header, if longer, is respected.
+ *
+ * Connection errors, timeouts and 502/503/504/429 responses are retried, for idempotent
+ * methods only. Errors and 5xx responses count as failures for the host's
+ * {@link CircuitBreaker}; while it is open, calls fail immediately with
+ * {@link CircuitBreaker.OpenException}. On the happy path this costs a map lookup and
+ * two reads of the breaker's state.
+ */
+public final class ResilientHttpClient {
+
+    /**
+     * Retry settings.
+     *
+     * @param maxAttempts    attempts per call, including the first
+     * @param initialBackoff wait before the first retry; doubled for each further retry
+     * @param maxBackoff     upper bound for the doubled wait
+     * @param jitter         fraction (0-1) of each wait that is randomized; 1 is "full jitter",
+     *                       a random wait between zero and the backoff
+     */
+    public record RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, double jitter) {
+
+        /** 4 attempts, 100ms doubling up to 2s, full jitter. */
+        public static RetryPolicy defaults() {
+            return new RetryPolicy(4, Duration.ofMillis(100), Duration.ofSeconds(2), 1.0);
+        }
+
+        public RetryPolicy withMaxAttempts(int maxAttempts) {
+            return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, jitter);
+        }
+
+        public RetryPolicy withBackoff(Duration initialBackoff, Duration maxBackoff) {
+            return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, jitter);
+        }
+
+        public RetryPolicy withJitter(double jitter) {
+            return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, jitter);
+        }
+
+        /**
+         * The wait before the given retry (1 for the first retry).
+         */
+        public Duration backoff(int retry) {
+            long base = initialBackoff.toNanos() << Math.min(retry - 1, 30);
+            long capped = base <= 0 ? maxBackoff.toNanos() : Math.min(base, maxBackoff.toNanos());
+            double randomized = capped * (1 - jitter * ThreadLocalRandom.current().nextDouble());
+            return Duration.ofNanos((long) randomized);
+        }
+    }
+
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+
+    private final HttpClient client;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker.Config breakerConfig;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public ResilientHttpClient(HttpClient client, RetryPolicy retryPolicy, CircuitBreaker.Config breakerConfig) {
+        if (retryPolicy.maxAttempts() < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.client = client;
+        this.retryPolicy = retryPolicy;
+        this.breakerConfig = breakerConfig;
+    }
+
+    /**
+     * Sends the request, retrying within the budget. Returns the last response once it is
+     * not retryable or no attempts or time are left.
+     *
+     * @throws HttpTimeoutException         if the budget runs out before a response arrives
+     * @throws CircuitBreaker.OpenException if the breaker for the host is open
+     * @throws IOException                  the last connection error if every attempt failed
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, Duration budget)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + budget.toNanos();
+        CircuitBreaker breaker = breaker(request.uri().getAuthority());
+        int maxAttempts = IDEMPOTENT_METHODS.contains(request.method()) ? retryPolicy.maxAttempts() : 1;
+
+        HttpResponse<T> response = null;
+        IOException failure = null;
+        for (int attempt = 1; ; attempt++) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new HttpTimeoutException("Budget of " + budget + " used up after " + (attempt - 1) + " attempts");
+            }
+            CircuitBreaker.Permit permit = attempt == 1 ? breaker.acquire() : breaker.tryAcquire();
+            if (permit == null) {
+                return result(response, failure);  // Opened by the previous attempts
+            }
+
+            response = null;
+            failure = null;
+            try {
+                response = client.send(withTimeout(request, remaining), handler);
+                if (response.statusCode() >= 500) {
+                    breaker.onFailure(permit);
+                } else {
+                    breaker.onSuccess(permit);
+                }
+            } catch (IOException e) {
+                breaker.onFailure(permit);
+                failure = e;
+            }
+
+            boolean retryable = response == null || RETRYABLE_STATUS.contains(response.statusCode());
+            if (!retryable || attempt >= maxAttempts) {
+                return result(response, failure);
+            }
+            Duration pause = retryPolicy.backoff(attempt);
+            if (response != null) {
+                Duration retryAfter = retryAfter(response.headers().firstValue("Retry-After").orElse(null));
+                pause = retryAfter.compareTo(pause) > 0 ? retryAfter : pause;
+            }
+            if (pause.compareTo(Duration.ofNanos(deadline - System.nanoTime())) >= 0) {
+                return result(response, failure);  // The retry could not finish in time anyway
+            }
+            Thread.sleep(pause);
+        }
+    }
+
+    /**
+     * The circuit breaker for a host (URI authority), created on first use.
+     */
+    public CircuitBreaker breaker(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker != null ? breaker : breakers.computeIfAbsent(host, h -> new CircuitBreaker(h, breakerConfig));
+    }
+
+    /**
+     * The request with its timeout reduced to the remaining budget; the request itself if its
+     * own timeout is already shorter.
+     */
+    private static HttpRequest withTimeout(HttpRequest request, long remainingNanos) {
+        Duration remaining = Duration.ofNanos(remainingNanos);
+        if (request.timeout().map(timeout -> timeout.compareTo(remaining) <= 0).orElse(false)) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(remaining).build();
+    }
+
+    /**
+     * A Retry-After value, in delta-seconds or as an HTTP-date (RFC 9110); zero if absent,
+     * malformed or in the past.
+     */
+    static Duration retryAfter(String value) {
+        if (value == null) {
+            return Duration.ZERO;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // Not delta-seconds; try the date form
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration until = Duration.between(Instant.now(), at.toInstant());
+            return until.isNegative() ? Duration.ZERO : until;
+        } catch (DateTimeParseException e) {
+            return Duration.ZERO;
+        }
+    }
+
+    private static <T> HttpResponse<T> result(HttpResponse<T> response, IOException failure) throws IOException {
+        if (response == null) {
+            throw failure;
+        }
+        return response;
+    }
+}
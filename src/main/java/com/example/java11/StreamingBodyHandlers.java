@@ -0,0 +1,194 @@
+package com.example.java11;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * Body handlers that process a response as its ByteBuffers arrive instead of collecting it.
+ *
+ * BodyHandlers.ofString() keeps every received buffer until the body is complete and then
+ * copies them into one String, so a large body briefly needs twice its size on the heap.
+ * The handlers here look at each buffer once and let it go: parse JSON incrementally, count
+ * or hash the bytes, or write them to a FileChannel at a given position.
+ */
+public final class StreamingBodyHandlers {
+
+    /**
+     * Size and message digest of a body.
+     */
+    public record Digest(long bytes, String algorithm, byte[] hash) {
+        public String hex() {
+            return HexFormat.of().formatHex(hash);
+        }
+    }
+
+    private StreamingBodyHandlers() {}
+
+    /**
+     * Discards the body and returns its size in bytes.
+     */
+    public static HttpResponse.BodyHandler<Long> ofByteCount() {
+        return info -> new ChunkSubscriber<>() {
+            private long bytes;
+
+            @Override
+            void accept(ByteBuffer chunk) {
+                bytes += chunk.remaining();
+                chunk.position(chunk.limit());
+            }
+
+            @Override
+            Long finish() {
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * Discards the body and returns its size and digest, e.g. {@code ofDigest("SHA-256")}.
+     *
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public static HttpResponse.BodyHandler<Digest> ofDigest(String algorithm) {
+        newDigest(algorithm);  // Fail now rather than on the first response
+        return info -> new ChunkSubscriber<>() {
+            private final MessageDigest digest = newDigest(algorithm);
+            private long bytes;
+
+            @Override
+            void accept(ByteBuffer chunk) {
+                bytes += chunk.remaining();
+                digest.update(chunk);
+            }
+
+            @Override
+            Digest finish() {
+                return new Digest(bytes, algorithm, digest.digest());
+            }
+        };
+    }
+
+    /**
+     * Parses the body as JSON while it arrives, reporting to a new listener from the supplier,
+     * and returns that listener once the whole body has been parsed.
+     */
+    public static <L extends JsonStreamParser.Listener> HttpResponse.BodyHandler<L> ofJson(Supplier<L> listeners) {
+        return info -> {
+            L listener = listeners.get();
+            JsonStreamParser parser = new JsonStreamParser(listener);
+            return new ChunkSubscriber<>() {
+                @Override
+                void accept(ByteBuffer chunk) {
+                    parser.feed(chunk);
+                }
+
+                @Override
+                L finish() {
+                    parser.finish();
+                    return listener;
+                }
+            };
+        };
+    }
+
+    /**
+     * Writes the body to the channel starting at the given position and returns the number
+     * of bytes written. The channel's own position is not used or changed, so several
+     * responses can write different regions of one file concurrently.
+     */
+    public static HttpResponse.BodyHandler<Long> ofFileChannel(FileChannel channel, long position) {
+        return info -> new ChunkSubscriber<>() {
+            private long written;
+
+            @Override
+            void accept(ByteBuffer chunk) throws IOException {
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk, position + written);
+                }
+            }
+
+            @Override
+            Long finish() {
+                return written;
+            }
+        };
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Requests one list of buffers at a time and hands each buffer to {@link #accept}.
+     * If processing fails the subscription is cancelled and the body completes with the error.
+     */
+    abstract static class ChunkSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        /** Consumes the buffer's remaining bytes. */
+        abstract void accept(ByteBuffer chunk) throws IOException;
+
+        /** Produces the body value once all buffers have been accepted. */
+        abstract T finish() throws IOException;
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer chunk : chunks) {
+                    accept(chunk);
+                }
+                subscription.request(1);
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            body.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                body.complete(finish());
+            } catch (IOException | RuntimeException e) {
+                body.completeExceptionally(e);
+            }
+        }
+    }
+}
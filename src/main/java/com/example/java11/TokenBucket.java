@@ -0,0 +1,76 @@
+package com.example.java11;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter: permits are earned at a fixed rate, up to {@code burst} saved up while idle,
+ * and each call spends some.
+ *
+ * Implemented as the generic cell rate algorithm, which behaves like a token bucket but keeps
+ * a single value: the time by which all permits handed out so far will have been earned.
+ * A call moves that time forward with compareAndSet, so there are no locks, and callers that
+ * have to wait reserve their permits first and then sleep, which serves them in arrival
+ * order without holding anything while asleep.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerPermit;
+    private final long burstNanos;
+    private final AtomicLong earnedBy;
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            permits that can be taken at once after an idle period
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.nanosPerPermit = Math.max(1, (long) (1e9 / permitsPerSecond));
+        this.burstNanos = burst * nanosPerPermit;
+        this.earnedBy = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes the permits, waiting until they have been earned. Returns the nanoseconds waited.
+     */
+    public long acquire(int permits) throws InterruptedException {
+        long wait = reserve(permits);
+        if (wait > 0) {
+            Thread.sleep(Duration.ofNanos(wait));
+        }
+        return wait;
+    }
+
+    /**
+     * Takes the permits if that needs no waiting.
+     */
+    public boolean tryAcquire(int permits) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = earnedBy.get();
+            long next = Math.max(current - now, 0) + now + permits * nanosPerPermit;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (earnedBy.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves the permits and returns how long the caller has to wait before using them.
+     */
+    private long reserve(int permits) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = earnedBy.get();
+            long next = Math.max(current - now, 0) + now + permits * nanosPerPermit;
+            if (earnedBy.compareAndSet(current, next)) {
+                return Math.max(0, next - burstNanos - now);
+            }
+        }
+    }
+}
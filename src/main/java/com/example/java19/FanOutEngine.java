@@ -0,0 +1,100 @@
+package com.example.java19;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fan-out/fan-in of the user and order lookups from {@link StructuredConcurrency},
+ * implemented for real with StructuredTaskScope (preview in Java 21, needs --enable-preview).
+ *
+ * {@link #fetchUserAndOrder} forks both lookups under ShutdownOnFailure: the first failure,
+ * or the deadline, cancels whichever lookup is still running. {@link #fetchFirst} races
+ * several replicas under ShutdownOnSuccess and cancels the losers. For comparison,
+ * {@link #fetchUserAndOrderWithFutures} is the ExecutorService + Future version, which
+ * waits on each Future in turn and only cancels after a failure is noticed.
+ */
+public class FanOutEngine {
+
+    public record User(String id, String name) {}
+
+    public record Order(String id, String userId, double total) {}
+
+    public record UserOrder(User user, Order order) {}
+
+    private final SimulatedBackend userService;
+    private final SimulatedBackend orderService;
+
+    public FanOutEngine(SimulatedBackend userService, SimulatedBackend orderService) {
+        this.userService = userService;
+        this.orderService = orderService;
+    }
+
+    public User fetchUser(String userId) throws Exception {
+        return userService.call(() -> new User(userId, "User " + userId));
+    }
+
+    public Order fetchOrder(String orderId) throws Exception {
+        return orderService.call(() -> new Order(orderId, "unknown", 99.95));
+    }
+
+    /**
+     * Fetches the user and the order concurrently; fails as soon as either fails
+     * or the deadline passes, cancelling the other lookup.
+     */
+    public UserOrder fetchUserAndOrder(String userId, String orderId, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            StructuredTaskScope.Subtask<User> user = scope.fork(() -> fetchUser(userId));
+            StructuredTaskScope.Subtask<Order> order = scope.fork(() -> fetchOrder(orderId));
+
+            scope.joinUntil(Instant.now().plus(timeout));  // Wait for both, a failure, or the deadline
+            scope.throwIfFailed();                          // Propagate the first failure
+
+            return new UserOrder(user.get(), order.get());
+        }  // Closing the scope cancels any subtask still running
+    }
+
+    /**
+     * Returns the first successful result from several equivalent calls
+     * (e.g. replicas of the same service) and cancels the rest.
+     */
+    public <T> T fetchFirst(List<Callable<T>> replicas, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try (var scope = new StructuredTaskScope.ShutdownOnSuccess<T>()) {
+            for (Callable<T> replica : replicas) {
+                scope.fork(replica);
+            }
+            scope.joinUntil(Instant.now().plus(timeout));
+            return scope.result();
+        }
+    }
+
+    /**
+     * The traditional version from compareWithTraditionalApproach: submit both lookups
+     * and block on each Future in order, cancelling both on any failure or timeout.
+     */
+    public UserOrder fetchUserAndOrderWithFutures(ExecutorService executor, String userId, String orderId,
+                                                  Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Future<User> userFuture = executor.submit(() -> fetchUser(userId));
+        Future<Order> orderFuture = executor.submit(() -> fetchOrder(orderId));
+        try {
+            User user = userFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            Order order = orderFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return new UserOrder(user, order);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            userFuture.cancel(true);  // Must explicitly cancel each future
+            orderFuture.cancel(true);
+            throw e;
+        }
+    }
+}
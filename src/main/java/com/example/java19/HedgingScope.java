@@ -0,0 +1,95 @@
+package com.example.java19;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A StructuredTaskScope for hedged requests: if the first attempt has not answered after
+ * a delay (typically the service's p95 latency), a duplicate is sent, and whichever
+ * answers first wins. The scope then shuts down, cancelling the slower attempts and any
+ * hedge that has not been sent yet.
+ *
+ * Hedging at p95 sends only about 5% extra requests but cuts off most of the latency
+ * tail, since a slow outlier is usually not repeated by the duplicate.
+ */
+public class HedgingScope<T> extends StructuredTaskScope<T> {
+
+    private final AtomicReference<Subtask<? extends T>> winner = new AtomicReference<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final AtomicInteger attemptsSent = new AtomicInteger();
+
+    public HedgingScope() {
+        super("hedging", Thread.ofVirtual().factory());
+    }
+
+    /**
+     * Sends {@code request} and, while no attempt has succeeded, another copy every
+     * {@code hedgeDelay}, up to {@code maxAttempts} in total.
+     */
+    public static <T> T call(Callable<T> request, Duration hedgeDelay, int maxAttempts, Duration timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try (var scope = new HedgingScope<T>()) {
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                scope.forkAfter(hedgeDelay.multipliedBy(attempt), request);
+            }
+            scope.joinUntil(Instant.now().plus(timeout));
+            return scope.result();
+        }
+    }
+
+    /**
+     * Forks an attempt that starts after the given delay, unless the scope has
+     * already shut down by then.
+     */
+    public Subtask<T> forkAfter(Duration delay, Callable<T> request) {
+        return fork(() -> {
+            if (!delay.isZero()) {
+                Thread.sleep(delay);  // Interrupted, and so never sent, if another attempt wins
+            }
+            attemptsSent.incrementAndGet();
+            return request.call();
+        });
+    }
+
+    @Override
+    protected void handleComplete(Subtask<? extends T> subtask) {
+        switch (subtask.state()) {
+            case SUCCESS -> {
+                if (winner.compareAndSet(null, subtask)) {
+                    shutdown();
+                }
+            }
+            case FAILED -> firstFailure.compareAndSet(null, subtask.exception());
+            case UNAVAILABLE -> {
+                // Cancelled after another attempt won
+            }
+        }
+    }
+
+    /**
+     * Returns the first successful result. Must be called after join.
+     *
+     * @throws ExecutionException if every attempt failed
+     */
+    public T result() throws ExecutionException {
+        ensureOwnerAndJoined();
+        Subtask<? extends T> first = winner.get();
+        if (first == null) {
+            throw new ExecutionException("All hedged attempts failed", firstFailure.get());
+        }
+        return first.get();
+    }
+
+    /**
+     * Number of attempts actually sent, including the first one.
+     */
+    public int attemptsSent() {
+        return attemptsSent.get();
+    }
+}
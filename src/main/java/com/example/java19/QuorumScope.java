@@ -0,0 +1,95 @@
+package com.example.java19;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A StructuredTaskScope that completes once N of its M subtasks have succeeded
+ * (the "ShutdownOnThreshold" pattern from {@link StructuredConcurrency}).
+ *
+ * As soon as the quorum is reached the scope shuts down and the remaining subtasks are
+ * cancelled. It also shuts down early once so many of the M expected subtasks have failed
+ * that the quorum can no longer be reached. M is given up front because a subtask can fail
+ * before the others have been forked.
+ *
+ * <pre>
+ * try (var scope = new QuorumScope&lt;Integer&gt;(2, replicas.size())) {
+ *     replicas.forEach(replica -&gt; scope.fork(replica::read));
+ *     scope.join();
+ *     List&lt;Integer&gt; firstTwo = scope.results();
+ * }
+ * </pre>
+ */
+public class QuorumScope<T> extends StructuredTaskScope<T> {
+
+    private final int quorum;
+    private final int expected;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final ConcurrentLinkedQueue<T> results = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A scope that needs {@code quorum} successes out of the {@code expected} subtasks that
+     * will be forked.
+     */
+    public QuorumScope(int quorum, int expected) {
+        super("quorum-" + quorum + "-of-" + expected, Thread.ofVirtual().factory());
+        if (quorum < 1) {
+            throw new IllegalArgumentException("quorum must be at least 1");
+        }
+        if (expected < quorum) {
+            throw new IllegalArgumentException("expected subtasks (" + expected
+                    + ") must be at least the quorum (" + quorum + ")");
+        }
+        this.quorum = quorum;
+        this.expected = expected;
+    }
+
+    @Override
+    protected void handleComplete(Subtask<? extends T> subtask) {
+        switch (subtask.state()) {
+            case SUCCESS -> {
+                // Only the first 'quorum' results are kept
+                if (succeeded.incrementAndGet() <= quorum) {
+                    results.add(subtask.get());
+                }
+                if (succeeded.get() >= quorum) {
+                    shutdown();
+                }
+            }
+            case FAILED -> {
+                failures.add(subtask.exception());
+                if (expected - failures.size() < quorum) {
+                    shutdown();
+                }
+            }
+            case UNAVAILABLE -> {
+                // Cancelled after shutdown; nothing to record
+            }
+        }
+    }
+
+    /**
+     * Returns the first {@code quorum} successful results in completion order.
+     * Must be called after join.
+     *
+     * @throws ExecutionException if fewer than {@code quorum} subtasks succeeded; the cause is
+     *                            the first failure and the others are added as suppressed
+     */
+    public List<T> results() throws ExecutionException {
+        ensureOwnerAndJoined();
+        if (results.size() < quorum) {
+            List<Throwable> errors = new ArrayList<>(failures);
+            ExecutionException e = new ExecutionException("Quorum of " + quorum + " not reached: "
+                    + results.size() + " succeeded, " + errors.size() + " failed",
+                    errors.isEmpty() ? null : errors.get(0));
+            errors.stream().skip(1).forEach(e::addSuppressed);
+            throw e;
+        }
+        return List.copyOf(results);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.java19;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fake remote service with injected latency and failures, used by the concurrency examples.
+ *
+ * Each call sleeps for a log-normally distributed time around the median latency (a larger
+ * sigma gives a longer tail) and then fails with the configured probability. Sleeping is
+ * interruptible, so cancelled callers stop immediately and are counted as cancellations.
+ */
+public class SimulatedBackend {
+
+    /**
+     * Thrown when the backend simulates a failed call.
+     */
+    public static class BackendUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public BackendUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    private final String name;
+    private final Duration medianLatency;
+    private final double sigma;
+    private final double failureRate;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+
+    /**
+     * @param medianLatency typical latency of a call
+     * @param sigma         spread of the log-normal latency distribution (0 for a fixed latency)
+     * @param failureRate   probability (0-1) that a call fails after its latency has elapsed
+     */
+    public SimulatedBackend(String name, Duration medianLatency, double sigma, double failureRate) {
+        this.name = name;
+        this.medianLatency = medianLatency;
+        this.sigma = sigma;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Waits for a simulated latency, then returns the supplied result or fails.
+     */
+    public <T> T call(Callable<T> result) throws Exception {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(sampleLatency());
+        } catch (InterruptedException e) {
+            cancellations.incrementAndGet();
+            throw e;
+        }
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failures.incrementAndGet();
+            throw new BackendUnavailableException(name + " is unavailable");
+        }
+        return result.call();
+    }
+
+    /**
+     * Draws one latency from the configured distribution.
+     */
+    public Duration sampleLatency() {
+        double factor = Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofNanos((long) (medianLatency.toNanos() * factor));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long calls() {
+        return calls.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public long cancellations() {
+        return cancellations.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + " (calls=" + calls() + ", failures=" + failures() + ", cancelled=" + cancellations() + ")";
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.java19;
 
+import com.example.LatencyHistogram;
+
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 /**
  * Demonstrates Structured Concurrency introduced as an incubator feature in Java 19.
@@ -10,8 +13,8 @@ import java.util.concurrent.Future;
  * Structured Concurrency treats multiple tasks running in different threads as a single
  * unit of work, ensuring reliable cancellation, error handling, and proper coordination.
  * 
- * Note: This is a conceptual example as the actual API requires the incubator module
- * and has evolved in later Java versions.
+ * The running examples use the Java 21 preview API (see {@link FanOutEngine}) and need
+ * --enable-preview; the API was an incubator module in Java 19-20 and has evolved since.
  */
 public class StructuredConcurrency {
 
@@ -19,6 +22,8 @@ public class StructuredConcurrency {
         introduceStructuredConcurrency();
         compareWithTraditionalApproach();
         conceptualExample();
+        tailLatencyComparison();
+        customScopes();
         architecturalPatterns();
         forkJoinComparison();
     }
@@ -78,24 +83,45 @@ public class StructuredConcurrency {
     }
     
     private static void conceptualExample() {
-        System.out.println("Conceptual Example with Structured Concurrency");
-        System.out.println("--------------------------------------------");
+        System.out.println("Structured Concurrency in Action");
+        System.out.println("--------------------------------");
         
-        System.out.println("With Structured Concurrency (Java 19+ with incubator module):");
-        System.out.println("```java");
-        System.out.println("try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {");
-        System.out.println("    Future<User> userFuture = scope.fork(() -> fetchUser(userId));");
-        System.out.println("    Future<Order> orderFuture = scope.fork(() -> fetchOrder(orderId));");
-        System.out.println("    ");
-        System.out.println("    scope.join();           // Wait for all tasks to complete");
-        System.out.println("    scope.throwIfFailed();  // Propagate errors if any task failed");
-        System.out.println("    ");
-        System.out.println("    // Both tasks completed successfully");
-        System.out.println("    User user = userFuture.resultNow();");
-        System.out.println("    Order order = orderFuture.resultNow();");
-        System.out.println("    processUserAndOrder(user, order);");
-        System.out.println("}  // Auto-cancellation of all subtasks when scope closes");
-        System.out.println("```");
+        SimulatedBackend userService = new SimulatedBackend("user-service", Duration.ofMillis(50), 0.2, 0.0);
+        SimulatedBackend orderService = new SimulatedBackend("order-service", Duration.ofMillis(80), 0.2, 0.0);
+        FanOutEngine engine = new FanOutEngine(userService, orderService);
+        
+        // ShutdownOnFailure: both lookups run concurrently, the call takes as long as the slower one
+        try {
+            long start = System.nanoTime();
+            FanOutEngine.UserOrder result = engine.fetchUserAndOrder("u-42", "o-7", Duration.ofSeconds(1));
+            System.out.println("Fetched " + result.user() + " and " + result.order()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        } catch (Exception e) {
+            System.out.println("Fetch failed: " + e);
+        }
+        
+        // Deadline: the order lookup cannot finish in 20ms, so both subtasks are cancelled
+        try {
+            engine.fetchUserAndOrder("u-42", "o-7", Duration.ofMillis(20));
+        } catch (Exception e) {
+            System.out.println("With a 20ms deadline: " + e.getClass().getSimpleName()
+                    + ", cancelled lookups so far: " + (userService.cancellations() + orderService.cancellations()));
+        }
+        
+        // ShutdownOnSuccess: race three replicas and keep the fastest
+        SimulatedBackend replicas = new SimulatedBackend("user-replicas", Duration.ofMillis(50), 0.8, 0.0);
+        try {
+            long start = System.nanoTime();
+            FanOutEngine.User fastest = engine.fetchFirst(List.of(
+                    () -> replicas.call(() -> new FanOutEngine.User("u-42", "from replica 1")),
+                    () -> replicas.call(() -> new FanOutEngine.User("u-42", "from replica 2")),
+                    () -> replicas.call(() -> new FanOutEngine.User("u-42", "from replica 3"))),
+                    Duration.ofSeconds(1));
+            System.out.println("First replica answered in " + (System.nanoTime() - start) / 1_000_000
+                    + "ms: " + fastest);
+        } catch (Exception e) {
+            System.out.println("All replicas failed: " + e);
+        }
         
         System.out.println("\nBenefits of this approach:");
         System.out.println("- Automatic cancellation of all subtasks");
@@ -107,6 +133,131 @@ public class StructuredConcurrency {
         System.out.println();
     }
     
+    /**
+     * Measures end-to-end latency of user+order fetches with both approaches against
+     * backends that have a long latency tail and occasionally fail. A fixed number of
+     * clients each issue requests back to back, so latency is not inflated by queueing.
+     */
+    private static void tailLatencyComparison() {
+        System.out.println("Tail Latency: StructuredTaskScope vs ExecutorService + Future");
+        System.out.println("------------------------------------------------------------");
+        
+        final int clients = 32;
+        final int requestsPerClient = 40;
+        final Duration timeout = Duration.ofMillis(500);
+        
+        SimulatedBackend userService = new SimulatedBackend("user-service", Duration.ofMillis(20), 0.6, 0.05);
+        SimulatedBackend orderService = new SimulatedBackend("order-service", Duration.ofMillis(20), 0.6, 0.05);
+        FanOutEngine engine = new FanOutEngine(userService, orderService);
+        
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Fetch structuredFetch = id -> engine.fetchUserAndOrder(id, id, timeout);
+            Fetch futureFetch = id -> engine.fetchUserAndOrderWithFutures(workers, id, id, timeout);
+            
+            // Warm up both code paths before measuring
+            runClients(structuredFetch, clients, 5, new LatencyHistogram(), new LatencyHistogram());
+            runClients(futureFetch, clients, 5, new LatencyHistogram(), new LatencyHistogram());
+            
+            LatencyHistogram structured = new LatencyHistogram();
+            LatencyHistogram structuredFailures = new LatencyHistogram();
+            LatencyHistogram futures = new LatencyHistogram();
+            LatencyHistogram futureFailures = new LatencyHistogram();
+            runClients(structuredFetch, clients, requestsPerClient, structured, structuredFailures);
+            runClients(futureFetch, clients, requestsPerClient, futures, futureFailures);
+            
+            System.out.println(clients + " clients x " + requestsPerClient
+                    + " requests, backends with 20ms median latency and 5% failures:");
+            System.out.println("  StructuredTaskScope, all requests:    " + structured.summary());
+            System.out.println("  StructuredTaskScope, failed requests: " + structuredFailures.summary());
+            System.out.println("  Executor + Future, all requests:      " + futures.summary());
+            System.out.println("  Executor + Future, failed requests:   " + futureFailures.summary());
+        }
+        System.out.println("  " + userService);
+        System.out.println("  " + orderService);
+        System.out.println("Failed requests are where the approaches differ: ShutdownOnFailure returns as soon as");
+        System.out.println("either lookup fails, while the Future version keeps waiting on the user lookup");
+        System.out.println("before it notices that the order lookup failed.");
+        
+        System.out.println();
+    }
+    
+    /**
+     * Custom scopes: quorum reads and hedged requests against a long-tail backend
+     */
+    private static void customScopes() {
+        System.out.println("Custom Scopes: Quorum and Hedging");
+        System.out.println("---------------------------------");
+        
+        // Median 10ms, but a long tail: p95 is about 50ms and p99 about 100ms
+        SimulatedBackend replica = new SimulatedBackend("replica", Duration.ofMillis(10), 1.0, 0.0);
+        
+        try (var scope = new QuorumScope<String>(2, 3)) {
+            long start = System.nanoTime();
+            for (int i = 1; i <= 3; i++) {
+                String name = "replica-" + i;
+                scope.fork(() -> replica.call(() -> name));
+            }
+            scope.join();
+            System.out.println("Quorum of 2 out of 3 replicas: " + scope.results()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + "ms (third read cancelled)");
+        } catch (Exception e) {
+            System.out.println("Quorum read failed: " + e);
+        }
+        
+        Duration p95 = Duration.ofMillis(50);
+        LatencyHistogram plain = new LatencyHistogram();
+        LatencyHistogram hedged = new LatencyHistogram();
+        long hedgedCallsBefore = replica.calls();
+        final int requests = 300;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                clients.submit(() -> {
+                    long start = System.nanoTime();
+                    replica.call(() -> "plain");
+                    plain.recordSince(start);
+                    
+                    start = System.nanoTime();
+                    HedgingScope.call(() -> replica.call(() -> "hedged"), p95, 2, Duration.ofSeconds(5));
+                    hedged.recordSince(start);
+                    return null;
+                });
+            }
+        }
+        long extraCalls = replica.calls() - hedgedCallsBefore - 2L * requests;
+        System.out.println(requests + " requests, hedging after p95 (" + p95.toMillis() + "ms):");
+        System.out.println("  Single request: " + plain.summary());
+        System.out.println("  Hedged request: " + hedged.summary());
+        System.out.println("  Extra requests sent by hedging: " + extraCalls
+                + " (" + (100 * extraCalls / requests) + "%)");
+        
+        System.out.println();
+    }
+    
+    // One user+order fetch, for the latency comparison
+    private interface Fetch {
+        void run(String id) throws Exception;
+    }
+    
+    private static void runClients(Fetch fetch, int clients, int requestsPerClient,
+                                   LatencyHistogram latencies, LatencyHistogram failureLatencies) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        long start = System.nanoTime();
+                        try {
+                            fetch.run(client + "-" + r);
+                        } catch (Exception e) {
+                            failureLatencies.recordSince(start);
+                        }
+                        latencies.recordSince(start);
+                    }
+                });
+            }
+        }
+    }
+    
     private static void architecturalPatterns() {
         System.out.println("Architectural Patterns");
         System.out.println("---------------------");
@@ -123,7 +274,8 @@ public class StructuredConcurrency {
         
         System.out.println("\n3. Custom Scopes Pattern");
         System.out.println("   - Create custom scopes with specialized shutdown policies");
-        System.out.println("   - Example: ShutdownOnThreshold to wait for N of M tasks to complete");
+        System.out.println("   - Example: ShutdownOnThreshold to wait for N of M tasks to complete (see QuorumScope)");
+        System.out.println("   - Example: Hedged requests that race a duplicate after a delay (see HedgingScope)");
         
         System.out.println("\n4. Scoped Values Pattern (related feature)");
         System.out.println("   - Share immutable data across all subtasks");
@@ -163,12 +315,4 @@ public class StructuredConcurrency {
         System.out.println("java --add-modules jdk.incubator.concurrent YourApp.java");
     }
     
-    // Example model classes for the code snippets
-    static class User {}
-    static class Order {}
-    
-    // Example methods referenced in code snippets (not implemented)
-    static User fetchUser(String userId) { return new User(); }
-    static Order fetchOrder(String orderId) { return new Order(); }
-    static void processUserAndOrder(User user, Order order) {}
 }
@@ -0,0 +1,65 @@
+package com.example.java20;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Per-request context (request id, caller identity, transaction) that every piece of code
+ * handling the request can read without passing it down as a parameter.
+ *
+ * The context is bound with a ScopedValue (preview in Java 21), not a ThreadLocal. The binding
+ * is immutable and lives only for the duration of {@link #call} or {@link #run}, and subtasks
+ * forked with StructuredTaskScope inside that call see it automatically. Unlike an
+ * InheritableThreadLocal, no per-thread map is created or copied for each new thread, which
+ * matters when a request fans out over many virtual threads.
+ *
+ * <pre>
+ * new RequestContext("req-1", "alice", "tx-9").call(() -&gt; {
+ *     try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+ *         scope.fork(() -&gt; audit(RequestContext.current().principal()));
+ *         ...
+ *     }
+ * });
+ * </pre>
+ */
+public record RequestContext(String requestId, String principal, String transactionId) {
+
+    private static final ScopedValue<RequestContext> CURRENT = ScopedValue.newInstance();
+
+    /**
+     * Returns the context bound for the current request.
+     *
+     * @throws IllegalStateException if called outside {@link #call} or {@link #run}
+     */
+    public static RequestContext current() {
+        return CURRENT.orElseThrow(() -> new IllegalStateException("No request context bound"));
+    }
+
+    /**
+     * Returns the current context, or empty when not running within a request.
+     */
+    public static Optional<RequestContext> find() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty();
+    }
+
+    /**
+     * Runs the operation with this context bound and returns its result.
+     */
+    public <T> T call(Callable<? extends T> operation) throws Exception {
+        return ScopedValue.where(CURRENT, this).call(operation);
+    }
+
+    /**
+     * Runs the operation with this context bound.
+     */
+    public void run(Runnable operation) {
+        ScopedValue.runWhere(CURRENT, this, operation);
+    }
+
+    /**
+     * A copy of this context acting for a different principal, e.g. a service account.
+     */
+    public RequestContext withPrincipal(String principal) {
+        return new RequestContext(requestId, principal, transactionId);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.java20;
+
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * Demonstrates Scoped Values introduced as a preview feature in Java 20
+ * (still a preview in Java 21, run with --enable-preview).
+ *
+ * A scoped value is bound to an immutable value for a bounded period of execution.
+ * Code called during that period, including subtasks forked with StructuredTaskScope,
+ * can read it, and the binding disappears when the period ends.
+ */
+public class ScopedValuesExample {
+
+    public static void main(String[] args) throws Exception {
+        introduceScopedValues();
+        bindingAndReading();
+        inheritanceIntoSubtasks();
+        comparisonWithThreadLocal();
+    }
+    
+    private static void introduceScopedValues() {
+        System.out.println("1. Introduction to Scoped Values");
+        System.out.println("-------------------------------");
+        
+        System.out.println("Scoped values are:");
+        System.out.println("- Immutable: a binding cannot be changed, only re-bound for a nested scope");
+        System.out.println("- Bounded: the value is visible only while the bound operation runs");
+        System.out.println("- Inherited by StructuredTaskScope subtasks without copying");
+        System.out.println("- A lighter replacement for ThreadLocal in virtual-thread code");
+        
+        System.out.println();
+    }
+    
+    private static void bindingAndReading() throws Exception {
+        System.out.println("2. Binding and Reading");
+        System.out.println("---------------------");
+        
+        RequestContext context = new RequestContext("req-1", "alice", "tx-100");
+        System.out.println("Bound outside a request? " + RequestContext.find().isPresent());
+        
+        context.run(() -> {
+            System.out.println("Inside the request: " + RequestContext.current());
+            
+            // Re-bind for a nested operation; the outer binding is restored afterwards
+            RequestContext.current().withPrincipal("batch-service").run(() ->
+                    System.out.println("Nested binding: " + RequestContext.current().principal()));
+            
+            System.out.println("Back in the outer binding: " + RequestContext.current().principal());
+        });
+        
+        System.out.println("Bound after the request? " + RequestContext.find().isPresent());
+        
+        System.out.println();
+    }
+    
+    private static void inheritanceIntoSubtasks() throws Exception {
+        System.out.println("3. Inheritance into Subtasks");
+        System.out.println("---------------------------");
+        
+        RequestContext context = new RequestContext("req-2", "bob", "tx-200");
+        context.call(() -> {
+            try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+                for (String step : new String[] {"load-profile", "load-orders", "audit"}) {
+                    scope.fork(() -> {
+                        RequestContext ctx = RequestContext.current();
+                        System.out.println("  " + step + " sees " + ctx.requestId() + " / " + ctx.principal()
+                                + " on virtual thread: " + Thread.currentThread().isVirtual());
+                        return null;
+                    });
+                }
+                scope.join().throwIfFailed();
+            }
+            
+            // Threads started outside a StructuredTaskScope do not inherit the binding
+            Thread plain = Thread.ofVirtual().start(() ->
+                    System.out.println("  Plain virtual thread sees a context? " + RequestContext.find().isPresent()));
+            plain.join();
+            return null;
+        });
+        
+        System.out.println();
+    }
+    
+    private static void comparisonWithThreadLocal() {
+        System.out.println("4. Comparison with ThreadLocal");
+        System.out.println("-----------------------------");
+        
+        System.out.println("ThreadLocal / InheritableThreadLocal:");
+        System.out.println("- Mutable, must be removed explicitly or it leaks (especially in pools)");
+        System.out.println("- Each thread keeps its own map; inheritance copies it for every new thread");
+        System.out.println("\nScopedValue:");
+        System.out.println("- Immutable and automatically unbound when the operation ends");
+        System.out.println("- Subtasks share the parent's bindings instead of copying them");
+        System.out.println("- See the benchmarks module (ContextPropagationBenchmark, ContextFootprint)");
+        System.out.println("  for access cost and memory at one million virtual threads");
+        
+        System.out.println();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.java21;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Runs each task on its own virtual thread, but never more than a fixed number at once.
+ *
+ * Virtual threads are cheap, but the resources they talk to (sockets, database connections,
+ * downstream services) are not. Use one executor per resource with a limit that resource can
+ * sustain. Tasks beyond the limit wait in a bounded queue; when that queue is full the
+ * {@link OverflowPolicy} decides whether the submitter blocks or the task is rejected.
+ *
+ * Blocking is done with a Semaphore and java.util.concurrent locks rather than synchronized,
+ * so waiting tasks never pin their carrier threads.
+ */
+public class BoundedVirtualThreadExecutor implements Executor, AutoCloseable {
+
+    /**
+     * What to do with a task when all permits are taken and the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Block the submitting thread until the queue has room (backpressure). */
+        BLOCK,
+        /** Throw RejectedExecutionException and count the task as rejected. */
+        REJECT
+    }
+
+    private final Semaphore permits;
+    private final BlockingQueue<Runnable> queue;
+    private final OverflowPolicy policy;
+    private final String name;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    // Tasks accepted but not yet finished, used by close() to wait for quiescence
+    private final AtomicLong outstanding = new AtomicLong();
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition idle = idleLock.newCondition();
+
+    private volatile boolean closed;
+
+    public BoundedVirtualThreadExecutor(String name, int maxConcurrency, int queueCapacity, OverflowPolicy policy) {
+        if (maxConcurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("maxConcurrency and queueCapacity must be at least 1");
+        }
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrency);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.policy = policy;
+    }
+
+    /**
+     * Runs the task now if a permit is free, otherwise queues it according to the overflow policy.
+     *
+     * @throws RejectedExecutionException if the executor is closed, or the queue is full under REJECT
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException(name + " is closed");
+        }
+        outstanding.incrementAndGet();
+
+        if (permits.tryAcquire()) {
+            start(task);
+            return;
+        }
+
+        if (policy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                taskFinished();
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+            }
+        } else if (!queue.offer(task)) {
+            taskFinished();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + " queue is full");
+        }
+
+        // A permit may have been released between tryAcquire and enqueueing
+        drain();
+    }
+
+    /**
+     * Submits tasks one at a time as they are pulled from the iterator. With BLOCK the
+     * iterator is only advanced as fast as the executor can accept work, so the full
+     * set of tasks is never materialized.
+     */
+    public void executeAll(Iterator<? extends Runnable> tasks) {
+        while (tasks.hasNext()) {
+            execute(tasks.next());
+        }
+    }
+
+    /**
+     * Stream variant of {@link #executeAll(Iterator)}.
+     */
+    public void executeAll(Stream<? extends Runnable> tasks) {
+        executeAll(tasks.iterator());
+    }
+
+    /** Tasks currently running. */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /** Tasks waiting for a permit. */
+    public int queued() {
+        return queue.size();
+    }
+
+    /** Tasks refused because the queue was full. */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /** Tasks that have finished running, successfully or not. */
+    public long completed() {
+        return completed.get();
+    }
+
+    /**
+     * Stops accepting tasks and waits for all accepted tasks to finish. Like
+     * {@code ExecutorService.close()}, this keeps waiting if interrupted and returns with the
+     * interrupt status set.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        idleLock.lock();
+        try {
+            while (outstanding.get() > 0) {
+                idle.awaitUninterruptibly();  // Leaves the interrupt status set if interrupted
+            }
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    private void start(Runnable task) {
+        inFlight.incrementAndGet();
+        Thread.ofVirtual().name(name + "-worker").start(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+                completed.incrementAndGet();
+                permits.release();
+                taskFinished();
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Starts queued tasks while permits are available.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable next = queue.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            start(next);
+        }
+    }
+
+    private void taskFinished() {
+        if (outstanding.decrementAndGet() == 0) {
+            idleLock.lock();
+            try {
+                idle.signalAll();
+            } finally {
+                idleLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.java21;
+
+import com.example.ExampleRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records virtual-thread pinning while a workload runs and ranks where it happens.
+ *
+ * A virtual thread is pinned when it blocks while it cannot unmount from its carrier,
+ * e.g. inside a synchronized block or a native frame. The JFR events
+ * jdk.VirtualThreadPinned and jdk.VirtualThreadSubmitFailed are captured for the
+ * duration of the workload and grouped by stack trace, most total pinned time first.
+ *
+ * Usage from the command line, running an example under the detector:
+ * <pre>
+ *   java --enable-preview -cp ... com.example.java21.PinningDetector com.example.java21.VirtualThreads
+ * </pre>
+ */
+public final class PinningDetector {
+
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final String SUBMIT_FAILED = "jdk.VirtualThreadSubmitFailed";
+
+    // Number of frames used to identify (and print) a pinning site
+    private static final int STACK_DEPTH = 8;
+
+    private PinningDetector() {}
+
+    /**
+     * Code to observe.
+     */
+    @FunctionalInterface
+    public interface Workload {
+        void run() throws Exception;
+    }
+
+    /**
+     * All events recorded at one stack trace.
+     */
+    public record Site(String eventType, List<String> frames, long events,
+                       Duration totalDuration, Duration maxDuration) {}
+
+    /**
+     * Sites ranked by total pinned time, followed by any submit failures.
+     */
+    public record Report(List<Site> sites, long pinnedEvents, Duration totalPinned, long submitFailures) {
+
+        public void print() {
+            System.out.println("Virtual thread pinning report");
+            System.out.println("  Pinned events: " + pinnedEvents
+                    + ", total pinned time: " + formatMillis(totalPinned)
+                    + ", submit failures: " + submitFailures);
+            int rank = 1;
+            for (Site site : sites) {
+                String kind = site.eventType().equals(PINNED) ? "pinned" : "submit failed";
+                System.out.println("  #" + rank++ + " " + kind + ": " + site.events() + " events, "
+                        + formatMillis(site.totalDuration()) + " total, "
+                        + formatMillis(site.maxDuration()) + " max");
+                site.frames().forEach(frame -> System.out.println("      at " + frame));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length != 1) {
+            System.err.println("Usage: PinningDetector <example class name>");
+            return;
+        }
+        record(() -> {
+            try {
+                ExampleRegistry.invoke(args[0]);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }).print();
+    }
+
+    /**
+     * Runs the workload on the calling thread with pinning events enabled and returns the report.
+     * Every pinned park is recorded, not only those above JFR's default 20ms threshold.
+     */
+    public static Report record(Workload workload) throws Exception {
+        Path dump = Files.createTempFile("pinning-", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED).withThreshold(Duration.ZERO).withStackTrace();
+            recording.enable(SUBMIT_FAILED).withStackTrace();
+            recording.start();
+            try {
+                workload.run();
+            } finally {
+                recording.stop();
+            }
+            recording.dump(dump);
+            return aggregate(RecordingFile.readAllEvents(dump));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private static Report aggregate(List<RecordedEvent> events) {
+        Map<String, List<RecordedEvent>> bySite = new LinkedHashMap<>();
+        for (RecordedEvent event : events) {
+            String type = event.getEventType().getName();
+            if (type.equals(PINNED) || type.equals(SUBMIT_FAILED)) {
+                String key = type + "\n" + String.join("\n", frames(event.getStackTrace()));
+                bySite.computeIfAbsent(key, k -> new ArrayList<>()).add(event);
+            }
+        }
+
+        List<Site> sites = new ArrayList<>();
+        long pinnedEvents = 0;
+        long submitFailures = 0;
+        Duration totalPinned = Duration.ZERO;
+        for (List<RecordedEvent> siteEvents : bySite.values()) {
+            RecordedEvent first = siteEvents.get(0);
+            String type = first.getEventType().getName();
+            Duration total = Duration.ZERO;
+            Duration max = Duration.ZERO;
+            for (RecordedEvent event : siteEvents) {
+                total = total.plus(event.getDuration());
+                if (event.getDuration().compareTo(max) > 0) {
+                    max = event.getDuration();
+                }
+            }
+            if (type.equals(PINNED)) {
+                pinnedEvents += siteEvents.size();
+                totalPinned = totalPinned.plus(total);
+            } else {
+                submitFailures += siteEvents.size();
+            }
+            sites.add(new Site(type, frames(first.getStackTrace()), siteEvents.size(), total, max));
+        }
+
+        sites.sort(Comparator.comparing((Site s) -> s.eventType().equals(SUBMIT_FAILED))
+                .thenComparing(Site::totalDuration, Comparator.reverseOrder())
+                .thenComparing(Site::events, Comparator.reverseOrder()));
+        return new Report(sites, pinnedEvents, totalPinned, submitFailures);
+    }
+
+    private static List<String> frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return List.of("<no stack trace>");
+        }
+        // Skip the scheduler's own parking frames so the first frame is the blocking call
+        return stackTrace.getFrames().stream()
+                .dropWhile(frame -> frame.getMethod().getType().getName().startsWith("java.lang.VirtualThread"))
+                .limit(STACK_DEPTH)
+                .map(PinningDetector::formatFrame)
+                .collect(Collectors.toList());
+    }
+
+    private static String formatFrame(RecordedFrame frame) {
+        // Lambda classes are hidden classes whose names differ from run to run
+        String type = frame.getMethod().getType().getName().replaceAll("\\$\\$Lambda.*", "\\$\\$Lambda");
+        String method = type + "." + frame.getMethod().getName();
+        int line = frame.getLineNumber();
+        return line > 0 ? method + ":" + line : method;
+    }
+
+    private static String formatMillis(Duration duration) {
+        return String.format("%.1fms", duration.toNanos() / 1_000_000.0);
+    }
+}
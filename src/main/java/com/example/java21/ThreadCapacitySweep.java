@@ -0,0 +1,272 @@
+package com.example.java21;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Capacity-planning sweep comparing platform thread pools with virtual threads.
+ *
+ * For every combination of task count, blocking time and CPU work per task, the same
+ * workload is run on a fixed pool, a cached pool and a virtual-thread-per-task executor.
+ * Each row reports throughput, p50/p99 task latency (submission to completion), peak RSS
+ * sampled during the run, and worker utilisation: the CPU time used by the pool threads
+ * (or, for virtual threads, the carrier threads) divided by their available wall time.
+ *
+ * Usage:
+ * <pre>
+ *   java --enable-preview -cp ... com.example.java21.ThreadCapacitySweep \
+ *       --tasks 1000,10000,100000 --block-ms 0,10,100 --cpu-us 0,100 --pool-size 200 \
+ *       --executors fixed,cached,virtual
+ * </pre>
+ *
+ * Results are printed as CSV. Peak RSS is read from /proc/self/status and is -1 on other
+ * platforms; since the heap rarely shrinks, run each executor type in its own JVM
+ * (via --executors) when comparing memory.
+ */
+public class ThreadCapacitySweep {
+
+    enum ExecutorKind { FIXED, CACHED, VIRTUAL }
+
+    record Workload(int tasks, int blockMillis, int cpuMicros) {}
+
+    record Result(ExecutorKind executor, Workload workload, int workers, String status,
+                  double tasksPerSecond, long p50Micros, long p99Micros,
+                  long peakRssKb, double workerUtilisation) {}
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Written by CPU-bound tasks so the busy loop cannot be optimized away
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] taskCounts = {1_000, 10_000};
+        int[] blockMillis = {0, 10};
+        int[] cpuMicros = {0, 100};
+        int poolSize = 200;
+        List<ExecutorKind> kinds = List.of(ExecutorKind.values());
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tasks" -> taskCounts = parseInts(args[i + 1]);
+                case "--block-ms" -> blockMillis = parseInts(args[i + 1]);
+                case "--cpu-us" -> cpuMicros = parseInts(args[i + 1]);
+                case "--pool-size" -> poolSize = Integer.parseInt(args[i + 1]);
+                case "--executors" -> kinds = Arrays.stream(args[i + 1].split(","))
+                        .map(s -> ExecutorKind.valueOf(s.trim().toUpperCase(Locale.ROOT)))
+                        .toList();
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.out.println("executor,tasks,blockMillis,cpuMicros,workers,status,"
+                + "tasksPerSecond,p50Micros,p99Micros,peakRssKb,workerUtilisation");
+        for (int tasks : taskCounts) {
+            for (int block : blockMillis) {
+                for (int cpu : cpuMicros) {
+                    Workload workload = new Workload(tasks, block, cpu);
+                    for (ExecutorKind kind : kinds) {
+                        System.out.println(toCsv(run(kind, workload, poolSize)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the workload once on a fresh executor of the given kind.
+     */
+    static Result run(ExecutorKind kind, Workload workload, int poolSize) throws InterruptedException {
+        Set<Thread> poolThreads = ConcurrentHashMap.newKeySet();
+        ThreadFactory tracking = r -> {
+            Thread thread = new Thread(r, "sweep-" + kind.name().toLowerCase(Locale.ROOT) + "-" + poolThreads.size());
+            poolThreads.add(thread);
+            return thread;
+        };
+        ExecutorService executor = switch (kind) {
+            case FIXED -> Executors.newFixedThreadPool(poolSize, tracking);
+            case CACHED -> Executors.newCachedThreadPool(tracking);
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+
+        long[] latencies = new long[workload.tasks()];
+        CountDownLatch done = new CountDownLatch(workload.tasks());
+        Map<Long, Long> carrierCpuBefore = kind == ExecutorKind.VIRTUAL ? cpuTimes(carrierThreads()) : Map.of();
+
+        try (executor; RssSampler rss = RssSampler.start()) {
+            long start = System.nanoTime();
+            try {
+                for (int i = 0; i < workload.tasks(); i++) {
+                    int index = i;
+                    long submitted = System.nanoTime();
+                    executor.execute(() -> {
+                        runTask(workload);
+                        latencies[index] = System.nanoTime() - submitted;
+                        done.countDown();
+                    });
+                }
+            } catch (OutOfMemoryError e) {
+                // Typically "unable to create native thread" for large cached pools
+                executor.shutdownNow();
+                return new Result(kind, workload, poolThreads.size(), "failed: " + e.getMessage(),
+                        -1, -1, -1, rss.peakKb(), -1);
+            }
+            done.await();
+            long wallNanos = System.nanoTime() - start;
+
+            Collection<Thread> workers = kind == ExecutorKind.VIRTUAL ? carrierThreads() : poolThreads;
+            long cpuNanos = 0;
+            for (Map.Entry<Long, Long> entry : cpuTimes(workers).entrySet()) {
+                cpuNanos += entry.getValue() - carrierCpuBefore.getOrDefault(entry.getKey(), 0L);
+            }
+            double utilisation = workers.isEmpty() ? 0 : (double) cpuNanos / ((double) wallNanos * workers.size());
+
+            Arrays.sort(latencies);
+            return new Result(kind, workload, workers.size(), "ok",
+                    workload.tasks() * 1_000_000_000.0 / wallNanos,
+                    percentile(latencies, 0.50) / 1_000,
+                    percentile(latencies, 0.99) / 1_000,
+                    rss.peakKb(), utilisation);
+        }
+    }
+
+    private static void runTask(Workload workload) {
+        if (workload.cpuMicros() > 0) {
+            long end = System.nanoTime() + workload.cpuMicros() * 1_000L;
+            long counter = 0;
+            while (System.nanoTime() < end) {
+                counter++;
+            }
+            sink = counter;
+        }
+        if (workload.blockMillis() > 0) {
+            try {
+                Thread.sleep(workload.blockMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * The platform threads that carry virtual threads (the default scheduler's ForkJoinPool workers).
+     */
+    static List<Thread> carrierThreads() {
+        List<Thread> carriers = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getClass().getName().equals("jdk.internal.misc.CarrierThread")) {
+                carriers.add(thread);
+            }
+        }
+        return carriers;
+    }
+
+    private static Map<Long, Long> cpuTimes(Collection<Thread> threads) {
+        Map<Long, Long> times = new HashMap<>();
+        if (!THREADS.isThreadCpuTimeSupported()) {
+            return times;
+        }
+        for (Thread thread : threads) {
+            long cpu = THREADS.getThreadCpuTime(thread.threadId());
+            if (cpu >= 0) {
+                times.put(thread.threadId(), cpu);
+            }
+        }
+        return times;
+    }
+
+    private static String toCsv(Result r) {
+        return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%s,%.1f,%d,%d,%d,%.3f",
+                r.executor().name().toLowerCase(Locale.ROOT),
+                r.workload().tasks(), r.workload().blockMillis(), r.workload().cpuMicros(),
+                r.workers(), r.status().replace(',', ';'),
+                r.tasksPerSecond(), r.p50Micros(), r.p99Micros(),
+                r.peakRssKb(), r.workerUtilisation());
+    }
+
+    private static int[] parseInts(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Samples the resident set size every few milliseconds on a daemon thread.
+     */
+    private static final class RssSampler implements AutoCloseable {
+        private static final Path STATUS = Path.of("/proc/self/status");
+
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile long peakKb = currentRssKb();
+
+        private RssSampler() {
+            thread = Thread.ofPlatform().name("rss-sampler").daemon(true).unstarted(this::sample);
+        }
+
+        static RssSampler start() {
+            RssSampler sampler = new RssSampler();
+            sampler.thread.start();
+            return sampler;
+        }
+
+        long peakKb() {
+            peakKb = Math.max(peakKb, currentRssKb());
+            return peakKb;
+        }
+
+        private void sample() {
+            while (running) {
+                peakKb = Math.max(peakKb, currentRssKb());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            thread.interrupt();
+        }
+
+        private static long currentRssKb() {
+            if (!Files.isReadable(STATUS)) {
+                return -1;
+            }
+            try {
+                for (String line : Files.readAllLines(STATUS)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("\\D", ""));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Fall through and report as unavailable
+            }
+            return -1;
+        }
+    }
+}
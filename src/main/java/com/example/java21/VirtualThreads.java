@@ -1,11 +1,13 @@
 package com.example.java21;
 
+import com.example.java19.FanOutEngine;
+import com.example.java19.SimulatedBackend;
+
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
@@ -28,6 +30,8 @@ public class VirtualThreads {
         virtualThreadCreation();
         executorWithVirtualThreads();
         massiveConcurrency();
+        massiveConcurrencyPinned();
+        boundedConcurrency();
         structuredConcurrency();
     }
     
@@ -50,80 +54,27 @@ public class VirtualThreads {
     }
     
     /**
-     * Compare platform threads and virtual threads
+     * Compare platform threads and virtual threads by running the same workload on each.
+     * See {@link ThreadCapacitySweep} for a full sweep over task counts and task shapes.
      */
     private static void compareThreadTypes() throws Exception {
         System.out.println("2. Comparing Thread Types");
         System.out.println("------------------------");
         
-        // Number of threads to create
-        final int threadCount = 10_000;
-        
-        // Measure platform thread creation time
-        Instant platformStart = Instant.now();
-        try {
-            System.out.println("Creating " + threadCount + " platform threads...");
-            List<Thread> platformThreads = new ArrayList<>();
-            
-            for (int i = 0; i < threadCount; i++) {
-                Thread platformThread = new Thread(() -> {
-                    try {
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                });
-                platformThreads.add(platformThread);
-            }
-            
-            // Start a small subset of the threads (creating all of them might crash the system)
-            int startCount = Math.min(100, threadCount);
-            for (int i = 0; i < startCount; i++) {
-                platformThreads.get(i).start();
-            }
-            
-            // Wait for the started threads to complete
-            for (int i = 0; i < startCount; i++) {
-                platformThreads.get(i).join();
-            }
-            
-        } catch (OutOfMemoryError e) {
-            System.out.println("Out of memory while creating platform threads: " + e.getMessage());
+        // Every executor runs the same tasks: each one blocks for 10ms (simulated I/O)
+        ThreadCapacitySweep.Workload workload = new ThreadCapacitySweep.Workload(5_000, 10, 0);
+        final int poolSize = 100;
+        
+        System.out.println("Running " + workload.tasks() + " tasks that each block for "
+                + workload.blockMillis() + "ms on every executor type...");
+        for (ThreadCapacitySweep.ExecutorKind kind : ThreadCapacitySweep.ExecutorKind.values()) {
+            ThreadCapacitySweep.Result result = ThreadCapacitySweep.run(kind, workload, poolSize);
+            System.out.printf("  %-8s threads=%-5d throughput=%.0f tasks/s  p50=%dms  p99=%dms  (%s)%n",
+                    kind, result.workers(), result.tasksPerSecond(),
+                    result.p50Micros() / 1_000, result.p99Micros() / 1_000, result.status());
         }
-        
-        Instant platformEnd = Instant.now();
-        Duration platformDuration = Duration.between(platformStart, platformEnd);
-        System.out.println("Platform thread creation time: " + platformDuration.toMillis() + "ms");
-        
-        // Measure virtual thread creation time
-        Instant virtualStart = Instant.now();
-        System.out.println("\nCreating " + threadCount + " virtual threads...");
-        List<Thread> virtualThreads = new ArrayList<>();
-        
-        for (int i = 0; i < threadCount; i++) {
-            Thread virtualThread = Thread.ofVirtual().unstarted(() -> {
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            });
-            virtualThreads.add(virtualThread);
-        }
-        
-        // Start all virtual threads
-        for (Thread thread : virtualThreads) {
-            thread.start();
-        }
-        
-        // Wait for all virtual threads to complete
-        for (Thread thread : virtualThreads) {
-            thread.join();
-        }
-        
-        Instant virtualEnd = Instant.now();
-        Duration virtualDuration = Duration.between(virtualStart, virtualEnd);
-        System.out.println("Virtual thread creation and execution time: " + virtualDuration.toMillis() + "ms");
+        System.out.println("(FIXED uses " + poolSize + " platform threads; CACHED grows a platform thread per concurrent task;");
+        System.out.println(" for VIRTUAL, threads is the number of carrier threads)");
         
         System.out.println("\nComparison:");
         System.out.println("- Platform threads: Heavy, each thread maps to an OS thread");
@@ -132,6 +83,7 @@ public class VirtualThreads {
         System.out.println("- Context switching: Platform (expensive OS operation), Virtual (cheap JVM operation)");
         System.out.println("- Use platform threads for: CPU-intensive tasks, native code, thread-local heavy code");
         System.out.println("- Use virtual threads for: I/O-bound tasks, blocking operations, high concurrency");
+        System.out.println("- For capacity planning run com.example.java21.ThreadCapacitySweep");
         
         System.out.println();
     }
@@ -266,20 +218,9 @@ public class VirtualThreads {
         Instant start = Instant.now();
         
         try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            // Submit all tasks
-            List<Runnable> tasks = IntStream.range(0, taskCount)
-                    .mapToObj(i -> (Runnable) () -> {
-                        try {
-                            // Simulate I/O operation (e.g., network request)
-                            Thread.sleep(10);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    })
-                    .toList();
-            
-            // Submit and wait for all tasks
-            tasks.forEach(executor::submit);
+            // Submit tasks as they are generated rather than building a list first;
+            // closing the executor waits for all of them
+            IntStream.range(0, taskCount).forEach(i -> executor.submit(VirtualThreads::simulatedIo));
         }
         
         Instant end = Instant.now();
@@ -297,6 +238,108 @@ public class VirtualThreads {
         System.out.println();
     }
     
+    /**
+     * Massive concurrency against a resource that can only take a limited number of requests
+     */
+    private static void boundedConcurrency() throws Exception {
+        System.out.println("5c. Bounded Concurrency with Backpressure");
+        System.out.println("---------------------------------------");
+        
+        final int taskCount = 100_000;
+        final int maxConcurrency = 1_000;
+        
+        // BLOCK: the producer waits whenever 1,000 tasks are running and 10,000 are queued
+        System.out.println("Streaming " + taskCount + " tasks through an executor limited to "
+                + maxConcurrency + " concurrent tasks...");
+        Instant start = Instant.now();
+        int peakInFlight = 0;
+        try (var executor = new BoundedVirtualThreadExecutor("downstream", maxConcurrency, 10_000,
+                BoundedVirtualThreadExecutor.OverflowPolicy.BLOCK)) {
+            var tasks = IntStream.range(0, taskCount)
+                    .mapToObj(i -> (Runnable) VirtualThreads::simulatedIo)
+                    .iterator();
+            while (tasks.hasNext()) {
+                executor.execute(tasks.next());
+                peakInFlight = Math.max(peakInFlight, executor.inFlight());
+            }
+            System.out.println("All tasks submitted; in flight: " + executor.inFlight()
+                    + ", queued: " + executor.queued());
+        }
+        Duration duration = Duration.between(start, Instant.now());
+        System.out.println("Completed in " + duration.toMillis() + "ms, peak in flight: " + peakInFlight);
+        
+        // REJECT: overflow is refused immediately instead of slowing the producer down
+        System.out.println("\nSubmitting 1,000 tasks to an executor limited to 10 running + 100 queued (REJECT):");
+        try (var executor = new BoundedVirtualThreadExecutor("fragile-downstream", 10, 100,
+                BoundedVirtualThreadExecutor.OverflowPolicy.REJECT)) {
+            for (int i = 0; i < 1_000; i++) {
+                try {
+                    executor.execute(VirtualThreads::simulatedIo);
+                } catch (RejectedExecutionException e) {
+                    // Counted by the executor; a real caller would shed load or retry later
+                }
+            }
+            System.out.println("In flight: " + executor.inFlight() + ", queued: " + executor.queued()
+                    + ", rejected: " + executor.rejected());
+        }
+        
+        System.out.println();
+    }
+    
+    // Simulate an I/O operation (e.g., network request)
+    private static void simulatedIo() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * The same kind of workload as massiveConcurrency, but each task blocks inside a
+     * synchronized block, which pins its virtual thread to the carrier thread.
+     * Run under PinningDetector so the report shows a known pinning baseline.
+     */
+    private static void massiveConcurrencyPinned() throws Exception {
+        System.out.println("5b. Massive Concurrency with Pinning");
+        System.out.println("-----------------------------------");
+        
+        // Pinned tasks only run as many at a time as there are carrier threads, so keep this small
+        final int taskCount = 500;
+        
+        System.out.println("Running " + taskCount + " tasks that sleep while holding a monitor...");
+        Instant start = Instant.now();
+        
+        PinningDetector.Report report = PinningDetector.record(() -> {
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < taskCount; i++) {
+                    Object lock = new Object();
+                    executor.submit(() -> {
+                        synchronized (lock) {
+                            try {
+                                // Blocking while holding a monitor pins the carrier thread
+                                Thread.sleep(10);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        
+        Duration duration = Duration.between(start, Instant.now());
+        System.out.println("All " + taskCount + " pinned tasks completed in " + duration.toMillis() + "ms");
+        report.print();
+        
+        System.out.println("\nAvoiding pinning:");
+        System.out.println("- Use ReentrantLock instead of synchronized around blocking calls");
+        System.out.println("- Keep native calls that block off virtual threads");
+        System.out.println("- Run workloads under PinningDetector to find the remaining hot spots");
+        
+        System.out.println();
+    }
+    
     /**
      * Structured concurrency (preview in Java 21)
      */
@@ -311,20 +354,15 @@ public class VirtualThreads {
         System.out.println("- Consolidates error handling");
         System.out.println("- Uses try-with-resources with the StructuredTaskScope class");
         
-        // Code example commented out because it's a preview feature requiring special JVM flags
-        System.out.println("\nExample code (requires preview features to be enabled):");
-        System.out.println("```java");
-        System.out.println("try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {");
-        System.out.println("    Future<User> user = scope.fork(() -> fetchUser(userId));");
-        System.out.println("    Future<Order> order = scope.fork(() -> fetchOrder(orderId));");
-        System.out.println("    ");
-        System.out.println("    scope.join();           // Wait for all tasks to complete");
-        System.out.println("    scope.throwIfFailed();  // Propagate errors");
-        System.out.println("    ");
-        System.out.println("    // Both tasks completed successfully");
-        System.out.println("    processUserAndOrder(user.resultNow(), order.resultNow());");
-        System.out.println("}");
-        System.out.println("```");
+        // Runs with --enable-preview; see com.example.java19.FanOutEngine for the implementation
+        System.out.println("\nFetching a user and an order concurrently with StructuredTaskScope.ShutdownOnFailure:");
+        FanOutEngine engine = new FanOutEngine(
+                new SimulatedBackend("user-service", Duration.ofMillis(30), 0.2, 0.0),
+                new SimulatedBackend("order-service", Duration.ofMillis(40), 0.2, 0.0));
+        Instant start = Instant.now();
+        FanOutEngine.UserOrder result = engine.fetchUserAndOrder("u-1", "o-1", Duration.ofSeconds(1));
+        System.out.println("  " + result.user() + ", " + result.order()
+                + " in " + Duration.between(start, Instant.now()).toMillis() + "ms");
         
         System.out.println("\nBenefits of Structured Concurrency:");
         System.out.println("- Clearer code organization with parent-child relationships");
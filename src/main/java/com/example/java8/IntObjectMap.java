@@ -0,0 +1,196 @@
+package com.example.java8;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Hash map from int keys to non-null values, with open addressing and linear probing, so
+ * looking up a key neither boxes it nor allocates an entry.
+ *
+ * A null value marks a free slot, which is why null values are rejected. Not thread-safe, like
+ * {@link IntLongMap}.
+ */
+public final class IntObjectMap<V> {
+
+    /**
+     * Receives the entries of a map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * A map that holds the given number of entries without resizing.
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(IntLongMap.tableSize(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return values[find(key)] != null;
+    }
+
+    /**
+     * The value for the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[find(key)];
+    }
+
+    /**
+     * Stores the value, returning the previous one or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "value");
+        int slot = find(key);
+        V previous = (V) values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        if (previous == null) {
+            added();
+        }
+        return previous;
+    }
+
+    /**
+     * The value for the key, storing the function's result first if the key is absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> function) {
+        int slot = find(key);
+        if (values[slot] != null) {
+            return (V) values[slot];
+        }
+        V value = Objects.requireNonNull(function.apply(key), "computed value");
+        keys[slot] = key;
+        values[slot] = value;
+        added();
+        return value;
+    }
+
+    /**
+     * Merges every entry of {@code other} into this map, combining the values of keys in both.
+     */
+    public IntObjectMap<V> mergeAll(IntObjectMap<V> other, BinaryOperator<V> function) {
+        other.forEach((key, value) -> {
+            V existing = get(key);
+            put(key, existing == null ? value : function.apply(existing, value));
+        });
+        return this;
+    }
+
+    /**
+     * Replaces every value with the function's result, possibly of another type, in place.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> IntObjectMap<R> replaceAll(Function<? super V, ? extends R> function) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != null) {
+                values[slot] = Objects.requireNonNull(function.apply((V) values[slot]), "replaced value");
+            }
+        }
+        return (IntObjectMap<R>) this;
+    }
+
+    /**
+     * Calls the consumer for every entry, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != null) {
+                consumer.accept(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+
+    /**
+     * The keys in ascending order.
+     */
+    public int[] sortedKeys() {
+        int[] sorted = new int[size];
+        int i = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != null) {
+                sorted[i++] = keys[slot];
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * A boxed copy in key order, for code that expects a {@code Map<Integer, V>}.
+     */
+    public Map<Integer, V> toMap() {
+        Map<Integer, V> map = new LinkedHashMap<>();
+        for (int key : sortedKeys()) {
+            map.put(key, get(key));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * The slot holding the key, or the free slot where it would go.
+     */
+    private int find(int key) {
+        int slot = IntLongMap.hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void added() {
+        if (++size > (mask + 1) / 2) {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            allocate((mask + 1) * 2);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] != null) {
+                    int newSlot = find(oldKeys[slot]);
+                    keys[newSlot] = oldKeys[slot];
+                    values[newSlot] = oldValues[slot];
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+}
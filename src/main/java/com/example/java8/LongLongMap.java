@@ -0,0 +1,219 @@
+package com.example.java8;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Hash map from long keys to long values, with open addressing and linear probing over two
+ * primitive arrays, so adding to an existing key allocates nothing.
+ *
+ * Key 0 marks a free slot; the entry for key 0 itself lives in an extra slot at the end of the
+ * arrays. Not thread-safe: parallel collectors fill one map per thread and {@link #mergeAll}
+ * them.
+ */
+public final class LongLongMap {
+
+    /**
+     * Receives the entries of a map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private boolean hasZeroKey;
+    private int size;
+
+    public LongLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * A map that holds the given number of entries without resizing.
+     */
+    public LongLongMap(int expectedSize) {
+        allocate(IntLongMap.tableSize(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return keys[find(key)] == key;
+    }
+
+    /**
+     * The value for the key, or {@code defaultValue} if there is none.
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? values[mask + 1] : defaultValue;
+        }
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    public void put(long key, long value) {
+        int slot = insert(key);
+        values[slot < 0 ? ~slot : slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value for the key, starting from 0.
+     */
+    public void addTo(long key, long delta) {
+        int slot = insert(key);
+        if (slot < 0) {
+            values[~slot] = delta;
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    /**
+     * Stores {@code value} if the key is absent, otherwise combines the old value with it.
+     * Pass a method reference such as {@code Math::min} so that no lambda is captured per call.
+     */
+    public void merge(long key, long value, LongBinaryOperator function) {
+        int slot = insert(key);
+        if (slot < 0) {
+            values[~slot] = value;
+        } else {
+            values[slot] = function.applyAsLong(values[slot], value);
+        }
+    }
+
+    /**
+     * Merges every entry of {@code other} into this map with {@link #merge}.
+     */
+    public LongLongMap mergeAll(LongLongMap other, LongBinaryOperator function) {
+        other.forEach((key, value) -> merge(key, value, function));
+        return this;
+    }
+
+    /**
+     * Calls the consumer for every entry, in no particular order.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+        if (hasZeroKey) {
+            consumer.accept(0, values[mask + 1]);
+        }
+    }
+
+    /**
+     * The keys in ascending order.
+     */
+    public long[] sortedKeys() {
+        long[] sorted = new long[size];
+        int i = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != 0) {
+                sorted[i++] = keys[slot];
+            }
+        }
+        if (hasZeroKey) {
+            sorted[i] = 0;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * A boxed copy in key order, for code that expects a {@code Map<Long, Long>}.
+     */
+    public Map<Long, Long> toMap() {
+        Map<Long, Long> map = new LinkedHashMap<>();
+        for (long key : sortedKeys()) {
+            map.put(key, getOrDefault(key, 0));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * The slot for the key, adding it if absent: the slot index if the key was present,
+     * otherwise the complement of the new slot's index.
+     */
+    private int insert(long key) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return mask + 1;
+            }
+            hasZeroKey = true;
+            size++;
+            return ~(mask + 1);
+        }
+        int slot = find(key);
+        if (keys[slot] == key) {
+            return slot;
+        }
+        keys[slot] = key;
+        if (++size > (mask + 1) / 2) {
+            rehash();
+            return ~find(key);
+        }
+        return ~slot;
+    }
+
+    /**
+     * The slot holding the key, or the free slot where it would go.
+     */
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int oldCapacity = mask + 1;
+        allocate(oldCapacity * 2);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (oldKeys[slot] != 0) {
+                int newSlot = find(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+        values[mask + 1] = oldValues[oldCapacity];
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity + 1];
+        values = new long[capacity + 1];
+        mask = capacity - 1;
+    }
+
+    // Fibonacci hashing, folding the high half in so that keys differing only there spread too
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.java8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterator over the lines of a memory-mapped UTF-8 file, splitting the byte range in halves
+ * moved forward to the next line start, so parallel streams parse a file of any size on all
+ * cores. In UTF-8 the byte {@code '\n'} only ever encodes a newline, so splits can be found
+ * without decoding.
+ *
+ * Lines end at {@code "\n"} or {@code "\r\n"}; unlike {@code Files.lines}, a lone {@code '\r'}
+ * does not end a line. {@code Files.lines} maps the file too, but does not split files over
+ * 2 GB. The number of lines is not known without reading the file, so the spliterator is not
+ * SIZED: the estimate is the number of bytes left, an upper bound that is proportional to the
+ * work left. Each spliterator maps its range lazily, in windows of at most {@value #WINDOW}
+ * bytes.
+ */
+public final class MappedLineSpliterator implements Spliterator<String> {
+
+    // Ranges smaller than this are not split further
+    private static final long MIN_SPLIT = 1 << 16;
+    private static final int WINDOW = 1 << 28;
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private byte[] line = new byte[256];
+
+    /**
+     * Spliterator over the lines starting in [start, end), where start is a line start and end
+     * is a line start or the end of the file.
+     */
+    MappedLineSpliterator(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * The lines of the file, closing it when the stream is closed.
+     */
+    public static Stream<String> lines(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return StreamSupport.stream(new MappedLineSpliterator(channel, 0, channel.size()), false)
+                    .onClose(() -> {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (position >= end) {
+            return false;
+        }
+        action.accept(nextLine());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        while (position < end) {
+            action.accept(nextLine());
+        }
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        long remaining = end - position;
+        if (remaining < MIN_SPLIT) {
+            return null;
+        }
+        long split = nextLineStart(position + remaining / 2);
+        if (split >= end) {
+            return null;
+        }
+        MappedLineSpliterator prefix = new MappedLineSpliterator(channel, position, split);
+        position = split;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Decodes the line at {@code position} and moves past its terminator.
+     */
+    private String nextLine() {
+        if (window == null || position < windowStart || position - windowStart >= window.limit()) {
+            map(position, WINDOW);
+        }
+        int offset = (int) (position - windowStart);
+        int newline = indexOfNewline(offset);
+        while (newline < 0 && windowStart + window.limit() < end) {
+            // The line continues past the window: map again from its start, twice as wide if needed
+            if (offset == 0 && window.limit() == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Line at byte " + position + " is longer than 2 GB");
+            }
+            map(position, offset == 0 ? 2L * window.limit() : WINDOW);
+            offset = 0;
+            newline = indexOfNewline(0);
+        }
+        int lineEnd = newline < 0 ? window.limit() : newline;
+        int length = lineEnd - offset;
+        if (length > 0 && window.get(lineEnd - 1) == '\r') {
+            length--;
+        }
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        window.get(offset, line, 0, length);
+        position = windowStart + (newline < 0 ? lineEnd : lineEnd + 1);
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from, limit = window.limit(); i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void map(long start, long size) {
+        try {
+            long length = Math.min(Math.min(size, end - start), Integer.MAX_VALUE);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            windowStart = start;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The start of the first line after {@code from}, or {@code end} if there is none.
+     */
+    private long nextLineStart(long from) {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        try {
+            for (long offset = from; offset < end; ) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return end;
+    }
+}
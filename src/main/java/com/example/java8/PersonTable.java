@@ -0,0 +1,392 @@
+package com.example.java8;
+
+import com.example.java8.StreamsAPI.Person;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link Person} rows stored by column: ages in an {@code int[]} and names dictionary-encoded,
+ * as an {@code int[]} of codes into an array of the distinct names.
+ *
+ * The operators of the {@link StreamsAPI} examples run on the primitive arrays, without a
+ * Person object or an Integer per row. A name predicate is evaluated once per distinct name
+ * rather than once per row, and sorting and grouping are counting sorts over the small range of
+ * ages and name codes. The dictionary is sorted, so comparing codes compares names.
+ *
+ * Tables are immutable; filtering and sorting return new tables sharing the dictionary.
+ * {@link #get}, {@link #stream} and {@link #asList} turn rows back into Person objects.
+ */
+public final class PersonTable {
+
+    // Above this many distinct keys, sort with Arrays.sort instead of counting
+    private static final int MAX_COUNTING_RANGE = 1 << 20;
+
+    // Spliterators split on multiples of this many rows
+    private static final int SPLIT_CHUNK = 1 << 12;
+
+    private final String[] dictionary;
+    private final int[] nameCodes;
+    private final int[] ages;
+
+    private PersonTable(String[] dictionary, int[] nameCodes, int[] ages) {
+        this.dictionary = dictionary;
+        this.nameCodes = nameCodes;
+        this.ages = ages;
+    }
+
+    /**
+     * Copies the persons into columns.
+     */
+    public static PersonTable of(Collection<Person> persons) {
+        Map<String, Integer> codes = new HashMap<>();
+        int[] nameCodes = new int[persons.size()];
+        int[] ages = new int[persons.size()];
+        int row = 0;
+        for (Person person : persons) {
+            Integer code = codes.get(person.getName());
+            if (code == null) {
+                code = codes.size();
+                codes.put(person.getName(), code);
+            }
+            nameCodes[row] = code;
+            ages[row] = person.getAge();
+            row++;
+        }
+
+        // Renumber the codes in name order
+        String[] dictionary = codes.keySet().toArray(new String[0]);
+        Arrays.sort(dictionary);
+        int[] sortedCode = new int[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++) {
+            sortedCode[codes.get(dictionary[i])] = i;
+        }
+        for (int i = 0; i < nameCodes.length; i++) {
+            nameCodes[i] = sortedCode[nameCodes[i]];
+        }
+        return new PersonTable(dictionary, nameCodes, ages);
+    }
+
+    public int size() {
+        return ages.length;
+    }
+
+    public String name(int row) {
+        return dictionary[nameCodes[row]];
+    }
+
+    public int age(int row) {
+        return ages[row];
+    }
+
+    public Person get(int row) {
+        return new Person(name(row), ages[row]);
+    }
+
+    /**
+     * The rows as Person objects, created as they are read.
+     */
+    public List<Person> asList() {
+        return new AbstractList<Person>() {
+            @Override
+            public Person get(int row) {
+                return PersonTable.this.get(row);
+            }
+
+            @Override
+            public int size() {
+                return ages.length;
+            }
+        };
+    }
+
+    public Stream<Person> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Person> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * A SIZED and SUBSIZED spliterator over the rows that splits in halves rounded to
+     * {@value #SPLIT_CHUNK} rows, so no two subtasks share a chunk of the columns.
+     */
+    public Spliterator<Person> spliterator() {
+        return new RowSpliterator(0, ages.length);
+    }
+
+    /**
+     * The rows whose age matches.
+     */
+    public PersonTable filterByAge(IntPredicate predicate) {
+        int[] rows = new int[ages.length];
+        int count = 0;
+        for (int row = 0; row < ages.length; row++) {
+            if (predicate.test(ages[row])) {
+                rows[count++] = row;
+            }
+        }
+        return select(rows, count);
+    }
+
+    /**
+     * The rows whose name matches, testing each distinct name once.
+     */
+    public PersonTable filterByName(Predicate<String> predicate) {
+        boolean[] matches = new boolean[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            matches[code] = predicate.test(dictionary[code]);
+        }
+        int[] rows = new int[ages.length];
+        int count = 0;
+        for (int row = 0; row < ages.length; row++) {
+            if (matches[nameCodes[row]]) {
+                rows[count++] = row;
+            }
+        }
+        return select(rows, count);
+    }
+
+    /**
+     * Number of rows whose age matches, without copying them.
+     */
+    public long countByAge(IntPredicate predicate) {
+        long count = 0;
+        for (int age : ages) {
+            if (predicate.test(age)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public OptionalDouble averageAge() {
+        if (ages.length == 0) {
+            return OptionalDouble.empty();
+        }
+        long sum = 0;
+        for (int age : ages) {
+            sum += age;
+        }
+        return OptionalDouble.of((double) sum / ages.length);
+    }
+
+    /**
+     * The last of the oldest persons, the same one as reducing with
+     * {@code p1.getAge() > p2.getAge() ? p1 : p2}.
+     */
+    public Optional<Person> oldest() {
+        if (ages.length == 0) {
+            return Optional.empty();
+        }
+        int oldest = 0;
+        for (int row = 1; row < ages.length; row++) {
+            if (ages[row] >= ages[oldest]) {
+                oldest = row;
+            }
+        }
+        return Optional.of(get(oldest));
+    }
+
+    /**
+     * Stable sort by age.
+     */
+    public PersonTable sortedByAge() {
+        return select(sortOrder(ages, identity(ages.length)), ages.length);
+    }
+
+    /**
+     * Sort by age, then name: sorting by name first and then stably by age.
+     */
+    public PersonTable sortedByAgeThenName() {
+        int[] byName = sortOrder(nameCodes, identity(ages.length));
+        return select(sortOrder(ages, byName), ages.length);
+    }
+
+    /**
+     * Number of rows per age, in age order.
+     */
+    public Map<Integer, Long> countPerAge() {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        int min = min(ages);
+        long range = (long) max(ages) - min + 1;
+        if (ages.length > 0 && range <= MAX_COUNTING_RANGE) {
+            long[] histogram = new long[(int) range];
+            for (int age : ages) {
+                histogram[age - min]++;
+            }
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] > 0) {
+                    counts.put(min + i, histogram[i]);
+                }
+            }
+            return counts;
+        }
+        int[] sorted = ages.clone();
+        Arrays.sort(sorted);
+        for (int age : sorted) {
+            counts.merge(age, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * The rows of each age, in age order, each group keeping the original row order.
+     */
+    public Map<Integer, PersonTable> groupByAge() {
+        PersonTable sorted = sortedByAge();
+        Map<Integer, PersonTable> groups = new LinkedHashMap<>();
+        int start = 0;
+        for (int row = 1; row <= sorted.ages.length; row++) {
+            if (row == sorted.ages.length || sorted.ages[row] != sorted.ages[start]) {
+                groups.put(sorted.ages[start], sorted.slice(start, row));
+                start = row;
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return "PersonTable[rows=" + ages.length + ", distinctNames=" + dictionary.length + "]";
+    }
+
+    private final class RowSpliterator implements Spliterator<Person> {
+        private int row;
+        private final int end;
+
+        RowSpliterator(int row, int end) {
+            this.row = row;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            if (row >= end) {
+                return false;
+            }
+            action.accept(get(row++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Person> action) {
+            String[] names = dictionary;
+            int[] codes = nameCodes;
+            int[] values = ages;
+            for (int i = row; i < end; i++) {
+                action.accept(new Person(names[codes[i]], values[i]));
+            }
+            row = end;
+        }
+
+        @Override
+        public Spliterator<Person> trySplit() {
+            int remaining = end - row;
+            if (remaining < 2 * SPLIT_CHUNK) {
+                return null;
+            }
+            int mid = (row + remaining / 2) & -SPLIT_CHUNK;
+            RowSpliterator prefix = new RowSpliterator(row, mid);
+            row = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - row;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+
+    private PersonTable slice(int from, int to) {
+        return new PersonTable(dictionary, Arrays.copyOfRange(nameCodes, from, to), Arrays.copyOfRange(ages, from, to));
+    }
+
+    private PersonTable select(int[] rows, int count) {
+        int[] selectedNames = new int[count];
+        int[] selectedAges = new int[count];
+        for (int i = 0; i < count; i++) {
+            selectedNames[i] = nameCodes[rows[i]];
+            selectedAges[i] = ages[rows[i]];
+        }
+        return new PersonTable(dictionary, selectedNames, selectedAges);
+    }
+
+    /**
+     * Reorders {@code rows} stably by {@code keys[row]}: a counting sort when the keys span a
+     * small range, otherwise a sort of (key, position) pairs packed into longs.
+     */
+    private static int[] sortOrder(int[] keys, int[] rows) {
+        if (rows.length == 0) {
+            return rows;
+        }
+        int min = min(keys);
+        long range = (long) max(keys) - min + 1;
+        int[] sorted = new int[rows.length];
+        if (range <= MAX_COUNTING_RANGE) {
+            int[] starts = new int[(int) range + 1];
+            for (int row : rows) {
+                starts[keys[row] - min + 1]++;
+            }
+            for (int i = 1; i < starts.length; i++) {
+                starts[i] += starts[i - 1];
+            }
+            for (int row : rows) {
+                sorted[starts[keys[row] - min]++] = row;
+            }
+            return sorted;
+        }
+        long[] packed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            packed[i] = ((long) keys[rows[i]] << 32) | i;
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < packed.length; i++) {
+            sorted[i] = rows[(int) packed[i]];
+        }
+        return sorted;
+    }
+
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static int min(int[] values) {
+        int min = Integer.MAX_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static int max(int[] values) {
+        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
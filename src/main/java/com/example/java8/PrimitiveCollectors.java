@@ -0,0 +1,136 @@
+package com.example.java8;
+
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+
+/**
+ * Grouping collectors keyed by an int or a long, as replacements for
+ * {@code Collectors.groupingBy(Person::getAge, Collectors.counting())} and its summing, min
+ * and max variants.
+ *
+ * They accumulate into {@link IntLongMap} or {@link LongLongMap}, so collecting an element
+ * neither boxes its key nor allocates a Long; the only allocation is the map itself, growing
+ * with the number of distinct keys. In parallel streams each thread fills its own map and the
+ * combiner merges the smaller map into the larger one.
+ *
+ * {@link #groupingByInt(ToIntFunction, Collector)} keeps any downstream collector but still
+ * avoids the boxed key.
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    /**
+     * Number of elements per key.
+     */
+    public static <T> Collector<T, ?, IntLongMap> countingByInt(ToIntFunction<? super T> key) {
+        return intLongCollector((map, element) -> map.addTo(key.applyAsInt(element), 1), Long::sum);
+    }
+
+    /**
+     * Sum of the values per key.
+     */
+    public static <T> Collector<T, ?, IntLongMap> summingByInt(ToIntFunction<? super T> key,
+                                                               ToLongFunction<? super T> value) {
+        return intLongCollector((map, element) -> map.addTo(key.applyAsInt(element), value.applyAsLong(element)),
+                Long::sum);
+    }
+
+    /**
+     * Smallest value per key.
+     */
+    public static <T> Collector<T, ?, IntLongMap> minByInt(ToIntFunction<? super T> key,
+                                                           ToLongFunction<? super T> value) {
+        return intLongCollector((map, element) -> map.merge(key.applyAsInt(element), value.applyAsLong(element), Math::min),
+                Math::min);
+    }
+
+    /**
+     * Largest value per key.
+     */
+    public static <T> Collector<T, ?, IntLongMap> maxByInt(ToIntFunction<? super T> key,
+                                                           ToLongFunction<? super T> value) {
+        return intLongCollector((map, element) -> map.merge(key.applyAsInt(element), value.applyAsLong(element), Math::max),
+                Math::max);
+    }
+
+    /**
+     * Number of elements per key.
+     */
+    public static <T> Collector<T, ?, LongLongMap> countingByLong(ToLongFunction<? super T> key) {
+        return longLongCollector((map, element) -> map.addTo(key.applyAsLong(element), 1), Long::sum);
+    }
+
+    /**
+     * Sum of the values per key.
+     */
+    public static <T> Collector<T, ?, LongLongMap> summingByLong(ToLongFunction<? super T> key,
+                                                                 ToLongFunction<? super T> value) {
+        return longLongCollector((map, element) -> map.addTo(key.applyAsLong(element), value.applyAsLong(element)),
+                Long::sum);
+    }
+
+    /**
+     * Smallest value per key.
+     */
+    public static <T> Collector<T, ?, LongLongMap> minByLong(ToLongFunction<? super T> key,
+                                                             ToLongFunction<? super T> value) {
+        return longLongCollector((map, element) -> map.merge(key.applyAsLong(element), value.applyAsLong(element), Math::min),
+                Math::min);
+    }
+
+    /**
+     * Largest value per key.
+     */
+    public static <T> Collector<T, ?, LongLongMap> maxByLong(ToLongFunction<? super T> key,
+                                                             ToLongFunction<? super T> value) {
+        return longLongCollector((map, element) -> map.merge(key.applyAsLong(element), value.applyAsLong(element), Math::max),
+                Math::max);
+    }
+
+    /**
+     * Groups by an int key, collecting each group with the downstream collector.
+     */
+    public static <T, A, D> Collector<T, ?, IntObjectMap<D>> groupingByInt(ToIntFunction<? super T> key,
+                                                                           Collector<? super T, A, D> downstream) {
+        Supplier<A> supplier = downstream.supplier();
+        IntFunction<A> newContainer = k -> supplier.get();
+        BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+        BinaryOperator<A> combiner = downstream.combiner();
+        Function<A, D> finisher = downstream.finisher();
+        return Collector.of(
+                IntObjectMap<A>::new,
+                (map, element) -> accumulator.accept(map.computeIfAbsent(key.applyAsInt(element), newContainer), element),
+                (left, right) -> left.size() >= right.size()
+                        ? left.mergeAll(right, combiner)
+                        : right.mergeAll(left, (r, l) -> combiner.apply(l, r)),
+                map -> map.replaceAll(finisher));
+    }
+
+    private static <T> Collector<T, IntLongMap, IntLongMap> intLongCollector(BiConsumer<IntLongMap, T> accumulator,
+                                                                           LongBinaryOperator combiner) {
+        return Collector.of(
+                IntLongMap::new,
+                accumulator,
+                (left, right) -> left.size() >= right.size() ? left.mergeAll(right, combiner) : right.mergeAll(left, combiner),
+                Characteristics.UNORDERED, Characteristics.IDENTITY_FINISH);
+    }
+
+    private static <T> Collector<T, LongLongMap, LongLongMap> longLongCollector(BiConsumer<LongLongMap, T> accumulator,
+                                                                              LongBinaryOperator combiner) {
+        return Collector.of(
+                LongLongMap::new,
+                accumulator,
+                (left, right) -> left.size() >= right.size() ? left.mergeAll(right, combiner) : right.mergeAll(left, combiner),
+                Characteristics.UNORDERED, Characteristics.IDENTITY_FINISH);
+    }
+}
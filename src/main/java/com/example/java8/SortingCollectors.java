@@ -0,0 +1,400 @@
+package com.example.java8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * Collectors that replace {@code sorted(comparator).limit(k)} and {@code sorted()} on large
+ * inputs.
+ *
+ * {@link #topK} and {@link #topKByInt} keep the first k elements in a bounded binary heap, so
+ * they take O(n log k) time and O(k) memory instead of sorting all n elements. Ties keep their
+ * encounter order, as with a stable sort, including in parallel streams: each thread fills its
+ * own heap and the combiner merges the smaller heap into the larger one, numbering the right
+ * side's elements after the left side's. {@link #sortedByInt} sorts by an int key with a
+ * stable LSD radix sort, skipping the byte positions in which all keys agree; for ages that is
+ * one pass over the data.
+ */
+public final class SortingCollectors {
+
+    private SortingCollectors() {
+    }
+
+    /**
+     * The first k elements in comparator order, sorted; the same list as
+     * {@code sorted(comparator).limit(k).collect(toList())}.
+     */
+    public static <T> Collector<T, ?, List<T>> topK(Comparator<? super T> comparator, int k) {
+        Objects.requireNonNull(comparator, "comparator");
+        checkK(k);
+        return Collector.of(
+                () -> new ComparatorHeap<T>(comparator, k),
+                ComparatorHeap::add,
+                BoundedHeap::combine,
+                BoundedHeap::toSortedList);
+    }
+
+    /**
+     * The k elements with the smallest keys, sorted by key; the same list as
+     * {@code sorted(Comparator.comparingInt(key)).limit(k).collect(toList())}, without a
+     * Comparator call or a boxed key per element.
+     */
+    public static <T> Collector<T, ?, List<T>> topKByInt(ToIntFunction<? super T> key, int k) {
+        Objects.requireNonNull(key, "key");
+        checkK(k);
+        return Collector.of(
+                () -> new IntKeyHeap<T>(key, k),
+                IntKeyHeap::add,
+                BoundedHeap::combine,
+                BoundedHeap::toSortedList);
+    }
+
+    /**
+     * All elements sorted by an int key, stably, into a fixed-size list; the same order as
+     * {@code sorted(Comparator.comparingInt(key))}. The elements are buffered with their keys
+     * in arrays and sorted once, in the finisher.
+     */
+    public static <T> Collector<T, ?, List<T>> sortedByInt(ToIntFunction<? super T> key) {
+        Objects.requireNonNull(key, "key");
+        return Collector.of(
+                KeyedBuffer<T>::new,
+                (buffer, element) -> buffer.add(element, key.applyAsInt(element)),
+                KeyedBuffer::append,
+                KeyedBuffer::sorted);
+    }
+
+    private static void checkK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+    }
+
+    /**
+     * Max-heap of at most k elements whose root is the last of the kept elements, tagged with
+     * their encounter order so that ties are broken by it.
+     */
+    private abstract static class BoundedHeap<T, H extends BoundedHeap<T, H>> {
+        final int k;
+        Object[] elements;
+        long[] order;
+        int size;
+        // Elements offered so far, including those not kept
+        long seen;
+
+        BoundedHeap(int k) {
+            this.k = k;
+            this.elements = new Object[Math.min(k, 16)];
+            this.order = new long[elements.length];
+        }
+
+        /**
+         * Compares the elements in slots i and j, without the encounter order.
+         */
+        abstract int compareSlots(int i, int j);
+
+        /**
+         * Stores the element in the spare slot at index {@code size}.
+         */
+        abstract void stage(Object element, long position, H from, int fromSlot);
+
+        abstract void swap(int i, int j);
+
+        final boolean before(int i, int j) {
+            int c = compareSlots(i, j);
+            return c != 0 ? c < 0 : order[i] < order[j];
+        }
+
+        /**
+         * Offers the element staged at index {@code size}.
+         */
+        final void offerStaged() {
+            if (size < k) {
+                siftUp(size++);
+            } else if (before(size, 0)) {
+                swap(size, 0);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Makes room for one staged element past the heap.
+         */
+        final void ensureSpare() {
+            if (size == elements.length) {
+                int capacity = (int) Math.min((long) k + 1, Math.max(16L, 2L * elements.length));
+                grow(capacity);
+            }
+        }
+
+        void grow(int capacity) {
+            elements = Arrays.copyOf(elements, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        final H combine(H right) {
+            H left = (H) this;
+            if (left.size >= right.size) {
+                left.absorb(right, left.seen);
+                left.seen += right.seen;
+                return left;
+            }
+            // Keep the larger heap, numbering its elements after the left side's
+            right.shift(left.seen);
+            right.absorb(left, 0);
+            right.seen += left.seen;
+            return right;
+        }
+
+        final void shift(long offset) {
+            for (int i = 0; i < size; i++) {
+                order[i] += offset;
+            }
+        }
+
+        final void absorb(H other, long offset) {
+            for (int i = 0; i < other.size; i++) {
+                ensureSpare();
+                stage(other.elements[i], other.order[i] + offset, other, i);
+                offerStaged();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<T> toSortedList() {
+            Object[] sorted = new Object[size];
+            while (size > 0) {
+                sorted[--size] = elements[0];
+                swap(0, size);
+                siftDown(0);
+            }
+            List<T> list = new ArrayList<>(sorted.length);
+            for (Object element : sorted) {
+                list.add((T) element);
+            }
+            return list;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(parent, i)) {
+                    return;
+                }
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && before(largest, left)) {
+                    largest = left;
+                }
+                if (right < size && before(largest, right)) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+    }
+
+    private static final class ComparatorHeap<T> extends BoundedHeap<T, ComparatorHeap<T>> {
+        private final Comparator<? super T> comparator;
+
+        ComparatorHeap(Comparator<? super T> comparator, int k) {
+            super(k);
+            this.comparator = comparator;
+        }
+
+        void add(T element) {
+            if (k == 0) {
+                seen++;
+                return;
+            }
+            ensureSpare();
+            stage(element, seen++, null, 0);
+            offerStaged();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        int compareSlots(int i, int j) {
+            return comparator.compare((T) elements[i], (T) elements[j]);
+        }
+
+        @Override
+        void stage(Object element, long position, ComparatorHeap<T> from, int fromSlot) {
+            elements[size] = element;
+            order[size] = position;
+        }
+
+        @Override
+        void swap(int i, int j) {
+            Object element = elements[i];
+            elements[i] = elements[j];
+            elements[j] = element;
+            long position = order[i];
+            order[i] = order[j];
+            order[j] = position;
+        }
+    }
+
+    private static final class IntKeyHeap<T> extends BoundedHeap<T, IntKeyHeap<T>> {
+        private final ToIntFunction<? super T> key;
+        private int[] keys;
+
+        IntKeyHeap(ToIntFunction<? super T> key, int k) {
+            super(k);
+            this.key = key;
+            this.keys = new int[elements.length];
+        }
+
+        void add(T element) {
+            if (k == 0) {
+                seen++;
+                return;
+            }
+            int value = key.applyAsInt(element);
+            // Reject most elements of a full heap with one int comparison
+            if (size == k && value > keys[0]) {
+                seen++;
+                return;
+            }
+            ensureSpare();
+            elements[size] = element;
+            keys[size] = value;
+            order[size] = seen++;
+            offerStaged();
+        }
+
+        @Override
+        int compareSlots(int i, int j) {
+            return Integer.compare(keys[i], keys[j]);
+        }
+
+        @Override
+        void stage(Object element, long position, IntKeyHeap<T> from, int fromSlot) {
+            elements[size] = element;
+            keys[size] = from.keys[fromSlot];
+            order[size] = position;
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+
+        @Override
+        void swap(int i, int j) {
+            Object element = elements[i];
+            elements[i] = elements[j];
+            elements[j] = element;
+            int value = keys[i];
+            keys[i] = keys[j];
+            keys[j] = value;
+            long position = order[i];
+            order[i] = order[j];
+            order[j] = position;
+        }
+    }
+
+    /**
+     * Growable parallel arrays of elements and their keys.
+     */
+    private static final class KeyedBuffer<T> {
+        private Object[] elements = new Object[16];
+        private int[] keys = new int[16];
+        private int size;
+
+        void add(T element, int key) {
+            if (size == elements.length) {
+                grow(size + 1);
+            }
+            elements[size] = element;
+            keys[size] = key;
+            size++;
+        }
+
+        KeyedBuffer<T> append(KeyedBuffer<T> other) {
+            if (size + other.size > elements.length) {
+                grow(size + other.size);
+            }
+            System.arraycopy(other.elements, 0, elements, size, other.size);
+            System.arraycopy(other.keys, 0, keys, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> sorted() {
+            Object[] sorted = radixSort(elements, keys, size);
+            return (List<T>) Arrays.asList(sorted);
+        }
+
+        private void grow(int minCapacity) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(minCapacity, 2L * elements.length));
+            elements = Arrays.copyOf(elements, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+
+    /**
+     * Stable LSD radix sort of the first n elements by their keys, one byte per pass, with the
+     * sign bit flipped so that negative keys sort first. Returns a new array of length n.
+     */
+    static Object[] radixSort(Object[] elements, int[] keys, int n) {
+        int[][] counts = new int[4][257];
+        for (int i = 0; i < n; i++) {
+            int unsigned = keys[i] ^ Integer.MIN_VALUE;
+            for (int digit = 0; digit < 4; digit++) {
+                counts[digit][((unsigned >>> (8 * digit)) & 0xFF) + 1]++;
+            }
+        }
+
+        Object[] values = Arrays.copyOf(elements, n);
+        int[] sortKeys = Arrays.copyOf(keys, n);
+        Object[] valueBuffer = null;
+        int[] keyBuffer = null;
+        for (int digit = 0; digit < 4 && n > 0; digit++) {
+            int shift = 8 * digit;
+            int[] starts = counts[digit];
+            // All keys have the same byte here, so this pass would not move anything
+            if (starts[(((sortKeys[0] ^ Integer.MIN_VALUE) >>> shift) & 0xFF) + 1] == n) {
+                continue;
+            }
+            for (int b = 1; b < starts.length; b++) {
+                starts[b] += starts[b - 1];
+            }
+            if (valueBuffer == null) {
+                valueBuffer = new Object[n];
+                keyBuffer = new int[n];
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = starts[((sortKeys[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+                valueBuffer[slot] = values[i];
+                keyBuffer[slot] = sortKeys[i];
+            }
+            Object[] swapValues = values;
+            values = valueBuffer;
+            valueBuffer = swapValues;
+            int[] swapKeys = sortKeys;
+            sortKeys = keyBuffer;
+            keyBuffer = swapKeys;
+        }
+        return values;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.java8;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -83,11 +86,29 @@ public class StreamsAPI {
                 .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
         System.out.println("\nCount by age: " + countByAge);
         
+        // Counting without boxing the keys or the counts
+        IntLongMap countByAgePrimitive = persons.stream()
+                .collect(PrimitiveCollectors.countingByInt(Person::getAge));
+        System.out.println("Count by age (primitive map): " + countByAgePrimitive);
+        IntLongMap youngestByNameLength = persons.stream()
+                .collect(PrimitiveCollectors.minByInt(p -> p.getName().length(), Person::getAge));
+        System.out.println("Youngest age by name length: " + youngestByNameLength);
+        
         // Reducing
         Optional<Person> oldestPerson = persons.stream()
                 .reduce((p1, p2) -> p1.getAge() > p2.getAge() ? p1 : p2);
         oldestPerson.ifPresent(p -> System.out.println("\nOldest person: " + p));
         
+        // Top-K without sorting everything: a heap of k elements
+        List<Person> twoYoungest = persons.stream()
+                .collect(SortingCollectors.topKByInt(Person::getAge, 2));
+        System.out.println("Two youngest: " + twoYoungest);
+        List<Person> twoOldest = persons.stream()
+                .collect(SortingCollectors.topK(Comparator.comparingInt(Person::getAge).reversed(), 2));
+        System.out.println("Two oldest: " + twoOldest);
+        System.out.println("Sorted by age (radix sort): " + persons.stream()
+                .collect(SortingCollectors.sortedByInt(Person::getAge)));
+        
         // Numeric streams
         int sum = IntStream.rangeClosed(1, 10).sum();
         System.out.println("\nSum of numbers 1 to 10: " + sum);
@@ -114,11 +135,46 @@ public class StreamsAPI {
         System.out.println("Any over 30? " + anyOver30);
         System.out.println("None over 40? " + noneOver40);
         
-        // Parallel streams for better performance with large datasets
+        // Parallel streams; on six elements this is slower than sequential, see
+        // ParallelStreamsBenchmark in the benchmarks module for where they pay off
         long count = persons.parallelStream()
                 .filter(p -> p.getAge() > 25)
                 .count();
         System.out.println("\nNumber of people over 25 (parallel): " + count);
+        
+        // The same operations on columns of primitives, for large datasets
+        PersonTable table = PersonTable.of(persons);
+        System.out.println("\nColumnar table: " + table);
+        System.out.println("Count over 25: " + table.countByAge(age -> age > 25));
+        System.out.println("Average age: " + table.averageAge().orElse(0));
+        System.out.println("Count by age: " + table.countPerAge());
+        System.out.println("Sorted by age and then name: " + table.sortedByAgeThenName().asList());
+        
+        // Parsing a memory-mapped file in parallel, split on line boundaries
+        parseFileInParallel();
+    }
+    
+    private static void parseFileInParallel() {
+        String[] names = {"John", "Alice", "Bob", "Charlie", "David", "Eve"};
+        try {
+            Path file = Files.createTempFile("persons", ".csv");
+            try {
+                Files.write(file, IntStream.range(0, 100_000)
+                        .mapToObj(i -> names[i % names.length] + "," + (18 + i % 60))
+                        .collect(Collectors.toList()));
+                try (Stream<String> lines = MappedLineSpliterator.lines(file)) {
+                    IntLongMap countByAge = lines.parallel()
+                            .map(Person::parse)
+                            .collect(PrimitiveCollectors.countingByInt(Person::getAge));
+                    System.out.println("\nParsed a 100,000 line file in parallel: " + countByAge.size()
+                            + " distinct ages, " + countByAge.getOrDefault(25, 0) + " persons aged 25");
+                }
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not parse the file: " + e.getMessage());
+        }
     }
     
     static class Person {
@@ -138,6 +194,14 @@ public class StreamsAPI {
             return age;
         }
         
+        /**
+         * Parses a "name,age" line.
+         */
+        public static Person parse(String line) {
+            int comma = line.lastIndexOf(',');
+            return new Person(line.substring(0, comma), Integer.parseInt(line, comma + 1, line.length(), 10));
+        }
+        
         @Override
         public String toString() {
             return name + " (" + age + ")";
@@ -29,6 +29,10 @@ module com.example.demo {
     requires jdk.jshell; // For JShell examples
     requires jdk.incubator.vector; // For Vector API (incubator module)
     requires java.net.http; // For HTTP Client API (Java 11+)
+    requires jdk.httpserver; // For the embedded test server used by the HTTP examples
+    requires java.management; // For thread CPU metrics in batch mode
+    requires jdk.management; // For thread allocation metrics in batch mode
+    requires jdk.jfr; // For recording virtual thread pinning events
     
     // Open packages for reflection (if needed)
     // opens com.example.java9 to java.desktop;
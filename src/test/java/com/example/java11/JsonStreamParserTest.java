@@ -0,0 +1,158 @@
+package com.example.java11;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonStreamParserTest {
+
+    private static final String GRINNING = new String(Character.toChars(0x1F600));
+    private static final String REPLACEMENT = "\uFFFD";
+
+    /**
+     * Records parse events as strings, e.g. "{", "name:a", "string:b", "number:1".
+     */
+    private static final class Recorder implements JsonStreamParser.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startObject() {
+            events.add("{");
+        }
+
+        @Override
+        public void endObject() {
+            events.add("}");
+        }
+
+        @Override
+        public void startArray() {
+            events.add("[");
+        }
+
+        @Override
+        public void endArray() {
+            events.add("]");
+        }
+
+        @Override
+        public void fieldName(String name) {
+            events.add("name:" + name);
+        }
+
+        @Override
+        public void stringValue(String value) {
+            events.add("string:" + value);
+        }
+
+        @Override
+        public void numberValue(String number) {
+            events.add("number:" + number);
+        }
+
+        @Override
+        public void booleanValue(boolean value) {
+            events.add("boolean:" + value);
+        }
+
+        @Override
+        public void nullValue() {
+            events.add("null");
+        }
+    }
+
+    /**
+     * Parses the UTF-8 encoding of the JSON text, fed in chunks of the given size.
+     */
+    private static List<String> parse(String json, int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Recorder recorder = new Recorder();
+        JsonStreamParser parser = new JsonStreamParser(recorder);
+        for (int from = 0; from < bytes.length; from += chunkSize) {
+            parser.feed(ByteBuffer.wrap(Arrays.copyOfRange(bytes, from, Math.min(from + chunkSize, bytes.length))));
+        }
+        parser.finish();
+        return recorder.events;
+    }
+
+    /**
+     * Parses the text in one chunk and in every smaller chunk size, expecting the same events.
+     */
+    private static void assertEvents(String json, String... expected) {
+        int length = json.getBytes(StandardCharsets.UTF_8).length;
+        for (int chunkSize = Math.max(1, length); chunkSize >= 1; chunkSize--) {
+            assertEquals(List.of(expected), parse(json, chunkSize), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void multiByteUtf8SplitAcrossChunks() {
+        // 2, 3 and 4 byte sequences, cut at every position by the chunk sizes
+        assertEvents("{\"caf\u00e9\": \"\u20ac " + GRINNING + "\"}",
+                "{", "name:caf\u00e9", "string:\u20ac " + GRINNING, "}");
+    }
+
+    @Test
+    void escapedSurrogatePair() {
+        assertEvents("\"\\uD83D\\uDE00\"", "string:" + GRINNING);
+        assertEvents("\"a\\ud83d\\ude00b\"", "string:a" + GRINNING + "b");
+    }
+
+    @Test
+    void unpairedHighSurrogateBecomesReplacementCharacter() {
+        assertEvents("\"\\uD83D\"", "string:" + REPLACEMENT);
+        assertEvents("\"\\uD83Dx\"", "string:" + REPLACEMENT + "x");
+        assertEvents("\"\\uD83D\\n\"", "string:" + REPLACEMENT + "\n");
+        assertEvents("\"\\uD83D\\u0041\"", "string:" + REPLACEMENT + "A");
+        // The second high surrogate pairs with the low one; only the first is lost
+        assertEvents("\"\\uD83D\\uD83D\\uDE00\"", "string:" + REPLACEMENT + GRINNING);
+        // A pending surrogate does not carry over into the next string
+        assertEvents("[\"\\uD83D\", \"\\uDE00\"]", "[", "string:" + REPLACEMENT, "string:" + REPLACEMENT, "]");
+    }
+
+    @Test
+    void unpairedLowSurrogateBecomesReplacementCharacter() {
+        assertEvents("\"\\uDE00\"", "string:" + REPLACEMENT);
+        assertEvents("\"x\\uDE00\\uD83D\"", "string:x" + REPLACEMENT + REPLACEMENT);
+    }
+
+    @Test
+    void numbersEndingAtChunkBoundary() {
+        assertEvents("[12,-3.5e+2,0]", "[", "number:12", "number:-3.5e+2", "number:0", "]");
+        // A top-level number only ends with the input
+        assertEvents("42", "number:42");
+        assertEvents("1 2\n3", "number:1", "number:2", "number:3");
+    }
+
+    @Test
+    void literalsAndNesting() {
+        assertEvents("{\"a\": [true, false, null], \"b\": {}}",
+                "{", "name:a", "[", "boolean:true", "boolean:false", "null", "]", "name:b", "{", "}", "}");
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        for (String json : List.of(
+                "{\"a\" 1}", "[1,]", "[1}", "{1: 2}", "01", "1.", "-", "tru", "nul", "[1 2]",
+                "\"\\x\"", "\"\\u12G4\"", "\"a\tb\"", "]", "{\"a\": 1,}")) {
+            for (int chunkSize : new int[] {1, 64}) {
+                assertThrows(JsonStreamParser.MalformedJsonException.class, () -> parse(json, chunkSize),
+                        json + " in chunks of " + chunkSize);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        for (String json : List.of("[1", "{\"a\": ", "\"abc", "\"\\u12", "{\"a\"")) {
+            assertThrows(JsonStreamParser.MalformedJsonException.class, () -> parse(json, 1), json);
+        }
+    }
+}